@@ -0,0 +1,23 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-number")
+@Data
+public class OrderNumberProperties {
+
+    /**
+     * 当前节点的机器号 (0 ~ 1023), 多个节点不能重复
+     * 不配置时, 启动时从redis中租用一个空闲的机器号
+     */
+    private Integer workerId;
+
+    /**
+     * 机器号租约的有效时间 (秒), 需大于续约间隔(10秒); 超过这个时间没能续约时暂停生成订单号
+     */
+    private long leaseTtl = 60;
+
+}
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    /**
+     * 购物车在redis中的有效时间 (天), 每次添加商品时重新计时
+     */
+    private long ttlDays = 7;
+
+    /**
+     * 是否开启异步回写: 定时把发生变化的购物车写回数据库的 shopping_cart 表
+     */
+    private boolean writeBehind = false;
+
+    /**
+     * 每次回写最多处理的用户数
+     */
+    private int flushBatchSize = 100;
+
+}
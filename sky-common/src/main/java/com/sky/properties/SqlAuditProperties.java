@@ -0,0 +1,35 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.sql-audit")
+@Data
+public class SqlAuditProperties {
+
+    /**
+     * 是否在启动时检查 mapper 中的查询语句
+     */
+    private boolean enabled = false;
+
+    /**
+     * 热点表: 这些表上的查询不允许全表扫描
+     */
+    private List<String> hotTables = new ArrayList<>();
+
+    /**
+     * 预估扫描行数 (EXPLAIN 的 rows) 小于这个值时不算全表扫描, 避免小表/字典表的误报
+     */
+    private long minRows = 1000;
+
+    /**
+     * 发现全表扫描时是否阻止项目启动 (为false时只打印警告日志)
+     */
+    private boolean failOnFullScan = true;
+
+}
@@ -1,6 +1,8 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
@@ -8,10 +10,16 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -19,14 +27,96 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http工具类
+ * ————> 所有请求共用一个带连接池的客户端, 连接保持(keep-alive)复用, 不再每次请求都重新建立 TCP + TLS 连接
+ * ————> 连接池对每个目标地址(route)的连接数有上限, 避免某一个接口变慢时占满所有连接
  */
+@Slf4j
 public class HttpClientUtil {
 
     static final  int TIMEOUT_MSEC = 5 * 1000;
 
+    // 从连接池获取连接的最长等待时间
+    static final int CONNECTION_REQUEST_TIMEOUT_MSEC = 1000;
+
+    // 连接池的总连接数, 以及每个目标地址的连接数上限
+    static final int MAX_TOTAL = 200;
+    static final int MAX_PER_ROUTE = 50;
+
+    // 服务端没有返回 Keep-Alive 超时时间时, 连接最多保持的时间; 以及空闲连接的清理时间
+    static final long KEEP_ALIVE_MSEC = 30 * 1000;
+    static final long IDLE_EVICT_MSEC = 30 * 1000;
+
+    // 连接空闲超过这个时间后, 再次使用前先检查连接是否可用
+    static final int VALIDATE_AFTER_INACTIVITY_MSEC = 2 * 1000;
+
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = new PoolingHttpClientConnectionManager();
+
+    private static final CloseableHttpClient HTTP_CLIENT;
+
+    static {
+        CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL);
+        CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MSEC);
+        // 后台线程定期关闭 过期 / 空闲时间过长 的连接
+        new IdleConnectionEvictor(CONNECTION_MANAGER, IDLE_EVICT_MSEC, TimeUnit.MILLISECONDS,
+                IDLE_EVICT_MSEC, TimeUnit.MILLISECONDS).start();
+        HTTP_CLIENT = configure(HttpClients.custom()).build();
+    }
+
+    /**
+     * 为客户端设置共用的连接池、连接保持策略以及超时时间 (微信支付的客户端也使用同一个连接池)
+     * @param builder
+     * @return
+     */
+    public static <T extends HttpClientBuilder> T configure(T builder) {
+        builder.setConnectionManager(CONNECTION_MANAGER)
+                // 连接池由当前类管理, 客户端关闭时不关闭连接池
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(builderRequestConfig())
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? Math.min(keepAlive, KEEP_ALIVE_MSEC) : KEEP_ALIVE_MSEC;
+                });
+        return builder;
+    }
+
+    /**
+     * 设置某个目标地址的连接数上限
+     * @param url 目标地址, 例如 https://api.weixin.qq.com
+     * @param max
+     */
+    public static void setMaxPerRoute(String url, int max) {
+        CONNECTION_MANAGER.setMaxPerRoute(toRoute(url), max);
+    }
+
+    /**
+     * 连接池整体的统计信息 (使用中 / 空闲 / 等待获取连接的请求数)
+     * @return
+     */
+    public static PoolStats getTotalStats() {
+        return CONNECTION_MANAGER.getTotalStats();
+    }
+
+    /**
+     * 某个目标地址的连接统计信息
+     * @param url
+     * @return
+     */
+    public static PoolStats getStats(String url) {
+        return CONNECTION_MANAGER.getStats(toRoute(url));
+    }
+
+    private static HttpRoute toRoute(String url) {
+        URI uri = URI.create(url);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
     /**
      * 发送GET方式请求
      * @param url
@@ -34,9 +124,6 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
         String result = "";
         CloseableHttpResponse response = null;
 
@@ -53,21 +140,18 @@ public class HttpClientUtil {
             HttpGet httpGet = new HttpGet(uri);
 
             //发送请求
-            response = httpClient.execute(httpGet);
+            response = HTTP_CLIENT.execute(httpGet);
 
             //判断响应状态
             if(response.getStatusLine().getStatusCode() == 200){
                 result = EntityUtils.toString(response.getEntity(),"UTF-8");
+            } else {
+                log.warn("GET请求失败: {}, 状态码: {}", url, response.getStatusLine().getStatusCode());
             }
         }catch (Exception e){
-            e.printStackTrace();
+            log.warn("GET请求失败: {}, {}, 连接池: {}", url, e.getMessage(), getTotalStats());
         }finally {
-            try {
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            closeQuietly(response);
         }
 
         return result;
@@ -81,8 +165,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -104,17 +186,13 @@ public class HttpClientUtil {
             httpPost.setConfig(builderRequestConfig());
 
             // 执行http请求
-            response = httpClient.execute(httpPost);
+            response = HTTP_CLIENT.execute(httpPost);
 
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            closeQuietly(response);
         }
 
         return resultString;
@@ -128,8 +206,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -154,17 +230,13 @@ public class HttpClientUtil {
             httpPost.setConfig(builderRequestConfig());
 
             // 执行http请求
-            response = httpClient.execute(httpPost);
+            response = HTTP_CLIENT.execute(httpPost);
 
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            closeQuietly(response);
         }
 
         return resultString;
@@ -172,8 +244,24 @@ public class HttpClientUtil {
     private static RequestConfig builderRequestConfig() {
         return RequestConfig.custom()
                 .setConnectTimeout(TIMEOUT_MSEC)
-                .setConnectionRequestTimeout(TIMEOUT_MSEC)
+                .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MSEC)
                 .setSocketTimeout(TIMEOUT_MSEC).build();
     }
 
+    /**
+     * 关闭响应, 读取剩余的内容后连接会归还到连接池中复用
+     * @param response
+     */
+    private static void closeQuietly(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            EntityUtils.consume(response.getEntity());
+            response.close();
+        } catch (IOException e) {
+            log.warn("关闭响应失败: {}", e.getMessage());
+        }
+    }
+
 }
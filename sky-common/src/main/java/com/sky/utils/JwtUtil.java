@@ -2,9 +2,13 @@ package com.sky.utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
 import java.util.Map;
 
@@ -47,13 +51,22 @@ public class JwtUtil {
      * @return
      */
     public static Claims parseJWT(String secretKey, String token) {
-        // 得到DefaultJwtParser
-        Claims claims = Jwts.parser()
-                // 设置签名的秘钥
-                .setSigningKey(secretKey.getBytes(StandardCharsets.UTF_8))
-                // 设置需要解析的jwt
-                .parseClaimsJws(token).getBody();
-        return claims;
+        return createParser(secretKey).parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * 创建已经设置好秘钥的解析器
+     * ————> 解析器创建好之后只读, 可以在多个线程之间复用, 避免每次解析都重新创建解析器、重新计算秘钥
+     *
+     * @param secretKey jwt秘钥
+     * @return
+     */
+    public static JwtParser createParser(String secretKey) {
+        // 提前创建好秘钥对象 ————> 如果只传入秘钥的字节数组, 解析器每次解析时都会重新创建一次秘钥对象
+        Key key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), SignatureAlgorithm.HS256.getJcaName());
+        // 得到DefaultJwtParser, 并设置签名的秘钥
+        return Jwts.parser()
+                .setSigningKey(key);
     }
 
 }
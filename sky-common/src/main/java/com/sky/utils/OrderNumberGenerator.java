@@ -0,0 +1,147 @@
+package com.sky.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 订单号生成器 (雪花算法)
+ * 订单号为一个64位的long:  0 | 41位时间戳(毫秒, 相对于EPOCH) | 10位机器号 | 12位毫秒内序列号
+ * ————> 不同节点的机器号不同, 同一节点同一毫秒内序列号递增, 因此订单号全局不重复
+ * ————> 时间戳与序列号合并存放在一个 AtomicLong 中, 通过CAS更新, 无锁
+ * ————> 机器号的租约丢失(被其他节点占用)时, 调用 suspend() 暂停生成, 重新拿到机器号后再调用 resume()
+ */
+public class OrderNumberGenerator {
+
+    // 起始时间 2024-01-01 00:00:00 (UTC+8)
+    private static final long EPOCH = 1704038400000L;
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    // 允许的时钟回拨的最大毫秒数, 超过时认为时钟异常
+    private static final long MAX_CLOCK_DRIFT_MS = 5000;
+
+    // 序列号用完时借用未来时间的最大毫秒数, 超过时等待时钟追上来, 而不是继续借用
+    private static final long MAX_BORROW_MS = 1000;
+
+    private volatile long workerId;
+
+    // 暂停生成: 机器号已不再属于当前节点, 继续生成可能与其他节点重复
+    private volatile boolean suspended;
+
+    // 高位: 上一次使用的时间戳,  低12位: 上一次使用的序列号
+    private final AtomicLong state = new AtomicLong();
+
+    // 观察到的最大系统时间, 用于区分 真正的时钟回拨 与 借用未来时间造成的超前
+    private final AtomicLong maxClock = new AtomicLong();
+
+    // 系统时间 (测试时可以替换, 模拟时钟回拨)
+    private final LongSupplier timeSource;
+
+    public OrderNumberGenerator(long workerId) {
+        this(workerId, System::currentTimeMillis);
+    }
+
+    OrderNumberGenerator(long workerId, LongSupplier timeSource) {
+        checkWorkerId(workerId);
+        this.workerId = workerId;
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * 生成下一个订单号
+     * @return
+     */
+    public long nextId() {
+        if (suspended) {
+            throw new IllegalStateException("机器号租约已丢失, 暂停生成订单号");
+        }
+        long workerId = this.workerId;
+        while (true) {
+            long now = timeSource.getAsLong();
+            long clock = maxClock.accumulateAndGet(now, Math::max);
+            // 系统时间比之前观察到的时间小 ————> 真正的时钟回拨
+            if (clock - now > MAX_CLOCK_DRIFT_MS) {
+                throw new IllegalStateException("时钟回拨超过 " + MAX_CLOCK_DRIFT_MS + "ms, 拒绝生成订单号");
+            }
+
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long lastSequence = last & MAX_SEQUENCE;
+
+            long timestamp;
+            long sequence;
+            if (now > lastTimestamp) {
+                // 进入新的毫秒, 序列号从0开始
+                timestamp = now;
+                sequence = 0;
+            } else {
+                // 同一毫秒内, 或者发生了时钟回拨 ————> 继续沿用上一次的时间戳, 保证单调递增
+                // 借用的时间超前太多(持续的突发请求), 等待时钟追上来
+                if (lastTimestamp - clock > MAX_BORROW_MS) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    continue;
+                }
+                timestamp = lastTimestamp;
+                sequence = lastSequence + 1;
+                if (sequence > MAX_SEQUENCE) {
+                    // 当前毫秒的序列号用完了, 借用下一毫秒
+                    timestamp = lastTimestamp + 1;
+                    sequence = 0;
+                }
+            }
+
+            if (state.compareAndSet(last, (timestamp << SEQUENCE_BITS) | sequence)) {
+                return ((timestamp - EPOCH) << (WORKER_ID_BITS + SEQUENCE_BITS))
+                        | (workerId << SEQUENCE_BITS)
+                        | sequence;
+            }
+            // CAS失败说明其他线程抢先生成了, 重试即可
+        }
+    }
+
+    /**
+     * 生成下一个订单号 (字符串形式)
+     * @return
+     */
+    public String nextNumber() {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 暂停生成订单号, 之后 nextId() 直接抛出异常
+     */
+    public void suspend() {
+        suspended = true;
+    }
+
+    /**
+     * 使用新的(或重新占用的)机器号恢复生成订单号
+     * @param workerId
+     */
+    public void resume(long workerId) {
+        checkWorkerId(workerId);
+        // 先设置机器号, 再解除暂停 ————> 看到 suspended == false 的线程一定能看到新的机器号
+        this.workerId = workerId;
+        suspended = false;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    private static void checkWorkerId(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("机器号必须在 0 ~ " + MAX_WORKER_ID + " 之间: " + workerId);
+        }
+    }
+}
@@ -17,9 +17,10 @@ import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.PrivateKey;
 import java.security.Signature;
@@ -44,31 +45,67 @@ public class WeChatPayUtil {
     @Autowired
     private WeChatProperties weChatProperties;
 
+    // 调用微信接口的客户端, 以及商户私钥 (第一次使用时加载, 之后一直复用)
+    private volatile CloseableHttpClient httpClient;
+    private volatile PrivateKey merchantPrivateKey;
+
     /**
      * 获取调用微信接口的客户端工具对象
+     * ————> 证书和私钥只在第一次调用时从文件中读取, 客户端使用 HttpClientUtil 的连接池, 连接保持复用
      *
      * @return
      */
-    private CloseableHttpClient getClient() {
-        PrivateKey merchantPrivateKey = null;
-        try {
-            //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
-            //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
-            //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
-            List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
-
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
-
-            // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
+    private CloseableHttpClient getClient() throws IOException {
+        CloseableHttpClient client = httpClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (this) {
+            if (httpClient == null) {
+                //加载平台证书文件
+                X509Certificate x509Certificate;
+                try (FileInputStream in = new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath()))) {
+                    x509Certificate = PemUtil.loadCertificate(in);
+                }
+                //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
+                List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
+
+                WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
+                        .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), getMerchantPrivateKey())
+                        .withWechatPay(wechatPayCertificates);
+
+                // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
+                httpClient = HttpClientUtil.configure(builder).build();
+            }
             return httpClient;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
+        }
+    }
+
+    /**
+     * 获取商户API私钥 (只从文件中读取一次)
+     *
+     * @return
+     */
+    private PrivateKey getMerchantPrivateKey() throws IOException {
+        PrivateKey privateKey = merchantPrivateKey;
+        if (privateKey != null) {
+            return privateKey;
+        }
+        synchronized (this) {
+            if (merchantPrivateKey == null) {
+                //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
+                try (FileInputStream in = new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))) {
+                    merchantPrivateKey = PemUtil.loadPrivateKey(in);
+                }
+            }
+            return merchantPrivateKey;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
         }
     }
 
@@ -93,7 +130,6 @@ public class WeChatPayUtil {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
             response.close();
         }
     }
@@ -117,7 +153,6 @@ public class WeChatPayUtil {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
             response.close();
         }
     }
@@ -188,7 +223,7 @@ public class WeChatPayUtil {
             byte[] message = signMessage.getBytes();
 
             Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))));
+            signature.initSign(getMerchantPrivateKey());
             signature.update(message);
             String packageSign = Base64.getEncoder().encodeToString(signature.sign());
 
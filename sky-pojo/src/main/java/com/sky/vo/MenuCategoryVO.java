@@ -0,0 +1,38 @@
+package com.sky.vo;
+
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 整个菜单中的一个分类 (分类信息 + 分类下起售中的菜品/套餐)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuCategoryVO implements Serializable {
+
+    //分类id
+    private Long id;
+
+    //类型: 1菜品分类 2套餐分类
+    private Integer type;
+
+    //分类名称
+    private String name;
+
+    //顺序
+    private Integer sort;
+
+    //分类下的菜品 (菜品分类)
+    private List<DishVO> dishes = new ArrayList<>();
+
+    //分类下的套餐 (套餐分类)
+    private List<Setmeal> setmeals = new ArrayList<>();
+}
@@ -0,0 +1,250 @@
+package com.sky.audit;
+
+import com.sky.properties.SqlAuditProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 启动时检查 mapper 中的查询语句 (xml 以及 @Select) 在热点表上是否走了全表扫描
+ * ————> 对每条查询语句构造一组示例参数, 生成最终的sql并执行 EXPLAIN
+ * ————> 热点表上出现 type = ALL(全表扫描) 或 index(全索引扫描) 时, 根据配置阻止项目启动或打印警告
+ * ————> 预估扫描行数小于 min-rows 的不算 (分类/店铺这类小表、字典表, 全表扫描比走索引更快, 数据量太小时结果也不准)
+ * 需要在统计信息接近真实的库上执行才有意义, 见测试 SqlExplainAuditIT (mvn -Psql-audit)
+ * 示例参数: 数字为1, 字符串为"1", 时间为当前时间, 集合中放一个元素, 实体类/DTO 的属性全部赋值 (动态sql的条件全部生效)
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.sql-audit", name = "enabled", havingValue = "true")
+@Slf4j
+public class SqlExplainAuditor implements ApplicationRunner {
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private SqlAuditProperties sqlAuditProperties;
+
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> violations = audit();
+        if (violations.isEmpty()) {
+            return;
+        }
+        violations.forEach(violation -> log.error("热点表全表扫描: {}", violation));
+        if (sqlAuditProperties.isFailOnFullScan()) {
+            throw new IllegalStateException("以下查询在热点表上会全表扫描, 请补充索引或修改sql: " + violations);
+        }
+    }
+
+    /**
+     * 检查所有查询语句
+     * @return 在热点表上全表扫描的语句
+     */
+    public List<String> audit() throws Exception {
+        Set<String> hotTables = sqlAuditProperties.getHotTables().stream()
+                .map(table -> table.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        if (hotTables.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        // 同一条语句会以 全名 和 简名 两个key注册, 按id去重 (简名冲突时存放的不是 MappedStatement, 跳过)
+        Map<String, MappedStatement> statements = new LinkedHashMap<>();
+        for (Object statement : configuration.getMappedStatements()) {
+            if (statement instanceof MappedStatement) {
+                MappedStatement ms = (MappedStatement) statement;
+                statements.put(ms.getId(), ms);
+            }
+        }
+
+        List<String> violations = new ArrayList<>();
+        int checked = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            for (MappedStatement ms : statements.values()) {
+                // 只检查查询语句 (跳过 selectKey 等内部语句)
+                if (ms.getSqlCommandType() != SqlCommandType.SELECT || ms.getId().contains("!")) {
+                    continue;
+                }
+                try {
+                    if (explain(connection, configuration, ms, hotTables, violations)) {
+                        checked++;
+                    }
+                } catch (Exception e) {
+                    log.warn("sql检查跳过: {}, {}", ms.getId(), e.getMessage());
+                }
+            }
+        }
+
+        log.info("sql检查完成, 热点表: {}, 检查语句数: {}, 全表扫描数: {}", hotTables, checked, violations.size());
+        return violations;
+    }
+
+    /**
+     * 对一条语句执行 EXPLAIN
+     * @return 语句涉及热点表时返回true
+     */
+    private boolean explain(Connection connection, Configuration configuration, MappedStatement ms,
+                            Set<String> hotTables, List<String> violations) throws Exception {
+        Object parameter = sampleParameter(configuration, ms);
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        String sql = boundSql.getSql();
+
+        String lowerSql = sql.toLowerCase(Locale.ROOT);
+        boolean touchesHotTable = hotTables.stream()
+                .anyMatch(table -> Pattern.compile("\\b" + Pattern.quote(table) + "\\b").matcher(lowerSql).find());
+        if (!touchesHotTable) {
+            return false;
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement("explain " + sql)) {
+            new DefaultParameterHandler(ms, parameter, boundSql).setParameters(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    String type = rs.getString("type");
+                    long rows = rs.getLong("rows");
+                    if (table == null || !hotTables.contains(table.toLowerCase(Locale.ROOT))
+                            || !("ALL".equalsIgnoreCase(type) || "index".equalsIgnoreCase(type))) {
+                        continue;
+                    }
+                    if (rows < sqlAuditProperties.getMinRows()) {
+                        log.debug("sql检查忽略小表扫描: {} ({}, type={}, rows={})", ms.getId(), table, type, rows);
+                        continue;
+                    }
+                    violations.add(ms.getId() + " (" + table + ", type=" + type + ", rows=" + rows + "): "
+                            + sql.replaceAll("\\s+", " "));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 根据 mapper 方法的参数类型构造示例参数, 并按 MyBatis 的规则包装 (与实际调用时传入的参数结构一致)
+     */
+    private Object sampleParameter(Configuration configuration, MappedStatement ms) throws ClassNotFoundException {
+        String id = ms.getId();
+        int dot = id.lastIndexOf('.');
+        Class<?> mapperClass = Class.forName(id.substring(0, dot));
+        String methodName = id.substring(dot + 1);
+
+        for (Method method : mapperClass.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                Type[] types = method.getGenericParameterTypes();
+                Object[] args = new Object[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    args[i] = sampleValue(types[i], true);
+                }
+                return new ParamNameResolver(configuration, method).getNamedParams(args);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 构造某个类型的示例值
+     * @param type
+     * @param allowBean 是否构造实体类 (只构造最外层, 实体类中的实体类属性不再赋值)
+     */
+    private Object sampleValue(Type type, boolean allowBean) {
+        Class<?> raw;
+        if (type instanceof Class) {
+            raw = (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            raw = (Class<?>) ((ParameterizedType) type).getRawType();
+        } else {
+            return null;
+        }
+
+        if (raw == Long.class || raw == long.class) {
+            return 1L;
+        }
+        if (raw == Integer.class || raw == int.class) {
+            return 1;
+        }
+        if (raw == Short.class || raw == short.class) {
+            return (short) 1;
+        }
+        if (raw == Boolean.class || raw == boolean.class) {
+            return true;
+        }
+        if (raw == BigDecimal.class) {
+            return BigDecimal.ONE;
+        }
+        if (raw == String.class) {
+            return "1";
+        }
+        if (raw == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (raw == LocalDate.class) {
+            return LocalDate.now();
+        }
+        if (raw == LocalTime.class) {
+            return LocalTime.now();
+        }
+        if (Collection.class.isAssignableFrom(raw)) {
+            Type elementType = type instanceof ParameterizedType
+                    ? ((ParameterizedType) type).getActualTypeArguments()[0] : Long.class;
+            Object element = sampleValue(elementType, allowBean);
+            return element == null ? Collections.emptyList() : new ArrayList<>(Collections.singletonList(element));
+        }
+        if (!allowBean || raw.isInterface() || raw.isArray() || raw.isEnum() || raw.getName().startsWith("java.")) {
+            return null;
+        }
+
+        // 实体类/DTO: 所有可写属性都赋上示例值
+        Object bean = BeanUtils.instantiateClass(raw);
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(raw)) {
+            if (pd.getWriteMethod() == null) {
+                continue;
+            }
+            Object value = sampleValue(pd.getWriteMethod().getGenericParameterTypes()[0], false);
+            if (value != null) {
+                try {
+                    pd.getWriteMethod().invoke(bean, value);
+                } catch (Exception e) {
+                    log.debug("示例参数赋值失败: {}.{}", raw.getSimpleName(), pd.getName());
+                }
+            }
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,47 @@
+package com.sky.cache;
+
+import com.sky.service.MenuSnapshotService;
+import com.sky.service.impl.MenuSnapshotServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 监听缓存失效通知, 清理当前节点的本地缓存
+ */
+@Component
+@Slf4j
+public class CacheInvalidationListener implements MessageListener {
+
+    @Autowired
+    private DishMenuCache dishMenuCache;
+
+    @Autowired
+    private MenuSnapshotService menuSnapshotService;
+
+    @Autowired
+    private MenuItemCache menuItemCache;
+
+    @Autowired
+    private TokenGenerationRegistry tokenGenerationRegistry;
+
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("收到缓存失效通知: {}, {}", channel, body);
+
+        if (DishMenuCache.INVALIDATE_CHANNEL.equals(channel)) {
+            dishMenuCache.invalidateLocal(body);
+        } else if (MenuSnapshotServiceImpl.INVALIDATE_CHANNEL.equals(channel)) {
+            menuSnapshotService.invalidateLocal(body);
+            // 菜品/套餐/分类有变化时, 购物车使用的单品缓存也一起清空
+            menuItemCache.invalidateAll();
+        } else if (TokenGenerationRegistry.INVALIDATE_CHANNEL.equals(channel)) {
+            tokenGenerationRegistry.applyLocal(body);
+        }
+    }
+}
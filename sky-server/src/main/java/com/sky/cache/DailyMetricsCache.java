@@ -0,0 +1,135 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.entity.DailyMetrics;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 已结束日期(今天之前)的每日经营数据的本地缓存
+ * ————> 已结束的日期数据基本不再变化, 不设过期时间; 每晚重新计算之后, 清理被重新计算的日期 (见 DailyMetricsTask)
+ * ————> 今天的数据不放入缓存, 每次实时统计
+ */
+@Component
+public class DailyMetricsCache {
+
+    // 最多缓存约10年的数据
+    private static final long MAX_SIZE = 3660;
+
+    private final Cache<LocalDate, DailyMetrics> metricsCache = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    // 某一天之前的用户总数
+    private final Cache<LocalDate, Integer> totalUserCache = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    /**
+     * 获取 [begin, end] 日期范围内每天的数据 (调用方保证 end 在今天之前)
+     * ————> 缓存中没有的日期, 一次性调用 loader 查询 (从第一个缺失的日期到最后一个缺失的日期), loader 没有返回的日期补0
+     * @param begin
+     * @param end
+     * @param loader 按日期范围查询
+     * @return 日期 -> 数据
+     */
+    public Map<LocalDate, DailyMetrics> getAll(LocalDate begin, LocalDate end,
+                                               BiFunction<LocalDate, LocalDate, List<DailyMetrics>> loader) {
+        Map<LocalDate, DailyMetrics> result = new HashMap<>();
+        LocalDate missBegin = null;
+        LocalDate missEnd = null;
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyMetrics metrics = metricsCache.getIfPresent(date);
+            if (metrics != null) {
+                result.put(date, metrics);
+            } else {
+                if (missBegin == null) {
+                    missBegin = date;
+                }
+                missEnd = date;
+            }
+        }
+        if (missBegin == null) {
+            return result;
+        }
+
+        Map<LocalDate, DailyMetrics> loaded = new HashMap<>();
+        for (DailyMetrics metrics : loader.apply(missBegin, missEnd)) {
+            loaded.put(metrics.getDate(), metrics);
+        }
+        for (LocalDate date = missBegin; !date.isAfter(missEnd); date = date.plusDays(1)) {
+            if (!result.containsKey(date)) {
+                DailyMetrics metrics = loaded.containsKey(date) ? normalize(loaded.get(date)) : empty(date);
+                metricsCache.put(date, metrics);
+                result.put(date, metrics);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取某一天之前的用户总数 (调用方保证 date 不晚于今天)
+     * @param date
+     * @param loader
+     * @return
+     */
+    public Integer getTotalUsersBefore(LocalDate date, Function<LocalDate, Integer> loader) {
+        return totalUserCache.get(date, loader);
+    }
+
+    /**
+     * 清理 [begin, end] 日期范围内的缓存
+     * @param begin
+     * @param end
+     */
+    public void invalidate(LocalDate begin, LocalDate end) {
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            metricsCache.invalidate(date);
+        }
+    }
+
+    /**
+     * 没有数据的日期, 所有指标为0
+     * @param date
+     * @return
+     */
+    public static DailyMetrics empty(LocalDate date) {
+        return DailyMetrics.builder()
+                .date(date)
+                .turnover(BigDecimal.ZERO)
+                .validOrderCount(0)
+                .totalOrderCount(0)
+                .newUserCount(0)
+                .build();
+    }
+
+    /**
+     * 把为null的指标补为0
+     * @param metrics
+     * @return
+     */
+    public static DailyMetrics normalize(DailyMetrics metrics) {
+        DailyMetrics result = empty(metrics.getDate());
+        if (metrics.getTurnover() != null) {
+            result.setTurnover(metrics.getTurnover());
+        }
+        if (metrics.getValidOrderCount() != null) {
+            result.setValidOrderCount(metrics.getValidOrderCount());
+        }
+        if (metrics.getTotalOrderCount() != null) {
+            result.setTotalOrderCount(metrics.getTotalOrderCount());
+        }
+        if (metrics.getNewUserCount() != null) {
+            result.setNewUserCount(metrics.getNewUserCount());
+        }
+        return result;
+    }
+}
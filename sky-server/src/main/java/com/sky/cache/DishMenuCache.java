@@ -0,0 +1,252 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * C端菜品缓存: 本地一级缓存(Caffeine) + redis二级缓存
+ * ————> 读: 本地 -> redis -> 数据库
+ * ————> 缓存未命中时, 同一个key在集群中只有一个请求去查询数据库 (本地future + redis锁), 避免缓存击穿
+ * ————> 写(清理): 不再用 keys 命令扫描删除, 而是给 redis 中的key加上版本号, 清理时只需要把版本号加1 (O(1)),
+ *                 旧版本的数据不会再被访问, 由过期时间自动淘汰; 再通过 redis 的发布/订阅 通知集群中所有节点清理本地缓存
+ */
+@Component
+@Slf4j
+public class DishMenuCache {
+
+    // redis中菜品缓存的key前缀, 规则为: dish_ + 分类id + :v全局版本号.分类版本号
+    public static final String KEY_PREFIX = "dish_";
+
+    // 版本号的key: 全局版本号(清理全部时加1) 以及 每个分类的版本号(清理单个分类时加1)
+    private static final String VERSION_PREFIX = "dish_version:";
+    private static final String VERSION_ALL_KEY = VERSION_PREFIX + "all";
+
+    // redis中数据的过期时间, 旧版本的数据依靠过期时间淘汰
+    private static final Duration REDIS_TTL = Duration.ofHours(24);
+
+    // 本地缓存失效通知的频道
+    public static final String INVALIDATE_CHANNEL = "cache:invalidate:dish";
+
+    // 清理全部菜品缓存时, 失效通知的内容
+    public static final String ALL_PATTERN = KEY_PREFIX + "*";
+
+    // 本地缓存的容量上限与过期时间 (过期时间兜底, 正常情况下依靠失效通知来清理)
+    private static final long LOCAL_MAX_SIZE = 1000;
+    private static final Duration LOCAL_TTL = Duration.ofSeconds(60);
+
+    // 加载数据时使用的redis锁
+    private static final String LOCK_PREFIX = "lock:";
+    private static final Duration LOCK_TTL = Duration.ofSeconds(10);
+    // 等待锁的上限: 比锁的过期时间稍长, 持有锁的节点即使宕机, 锁过期后等待者也能抢到锁并加载
+    private static final Duration LOCK_WAIT = LOCK_TTL.plusSeconds(3);
+    private static final Duration LOCK_RETRY_INTERVAL = Duration.ofMillis(50);
+
+    // 释放锁: 只有锁的值与自己的token一致时才删除
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<String, List<DishVO>> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAX_SIZE)
+            .expireAfterWrite(LOCAL_TTL)
+            .build();
+
+    // 本地缓存的版本号, 每次清理时加1
+    // ————> 从redis读到数据后, 只有版本号未发生变化才写入本地缓存, 防止把清理前读到的旧数据又放回本地
+    private final AtomicLong localVersion = new AtomicLong();
+
+    // 当前节点正在加载中的key
+    private final ConcurrentMap<String, CompletableFuture<List<DishVO>>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 查询某个分类下的菜品, 缓存中不存在时通过 loader 查询数据库
+     * @param categoryId 分类id
+     * @param loader 查询数据库的方法
+     * @return
+     */
+    public List<DishVO> get(Long categoryId, Supplier<List<DishVO>> loader) {
+        String key = KEY_PREFIX + categoryId;
+
+        // 1. 先查本地缓存, 命中则直接返回 (仅一次堆内查找)
+        List<DishVO> list = localCache.getIfPresent(key);
+        if (list != null) {
+            return list;
+        }
+
+        long version = localVersion.get();
+
+        // 2. 本地缓存未命中, 同一个key在当前节点只允许一个线程去加载, 其他线程等待这个线程的结果
+        CompletableFuture<List<DishVO>> future = new CompletableFuture<>();
+        CompletableFuture<List<DishVO>> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            list = loadFromRedisOrDb(versionedKey(categoryId), loader);
+            future.complete(list);
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+
+        // 3. 放入本地缓存
+        if (localVersion.get() == version) {
+            localCache.put(key, list);
+        }
+        return list;
+    }
+
+    /**
+     * 查询redis, 不存在时查询数据库并写回redis
+     * ————> 集群中同一个key只允许一个节点去查询数据库 (通过redis锁), 其他节点等待redis中出现数据或者继续抢锁
+     * ————> 持有锁的节点宕机时, 等待者在锁过期后抢到锁, 由它加载并写回redis, 而不是所有等待者一起去查询数据库
+     * @param key
+     * @param loader
+     * @return
+     */
+    private List<DishVO> loadFromRedisOrDb(String key, Supplier<List<DishVO>> loader) {
+        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
+        if (list != null) {
+            return list;
+        }
+
+        String lockKey = LOCK_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + LOCK_WAIT.toMillis();
+        while (true) {
+            Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, LOCK_TTL);
+            if (Boolean.TRUE.equals(locked)) {
+                try {
+                    // 拿到锁后再查一次redis, 可能其他节点刚刚加载完
+                    list = (List<DishVO>) redisTemplate.opsForValue().get(key);
+                    if (list == null) {
+                        list = loader.get();
+                        redisTemplate.opsForValue().set(key, list, REDIS_TTL);
+                    }
+                    return list;
+                } finally {
+                    // 只释放自己持有的锁
+                    stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+                }
+            }
+
+            // 其他节点正在加载, 等待其写入redis
+            sleep(LOCK_RETRY_INTERVAL);
+            list = (List<DishVO>) redisTemplate.opsForValue().get(key);
+            if (list != null) {
+                return list;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                // 锁过期后仍然抢不到 (redis异常), 直接报错, 不让等待者一起去查询数据库
+                throw new IllegalStateException("等待菜品缓存加载超时: " + key);
+            }
+        }
+    }
+
+    /**
+     * 等待当前节点其他线程的加载结果
+     * ————> join() 会把加载线程抛出的异常包装成 CompletionException, 这里拆开后原样抛出, 与加载线程看到的异常一致
+     * @param running
+     * @return
+     */
+    private List<DishVO> await(CompletableFuture<List<DishVO>> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 拼接带版本号的redis key
+     * @param categoryId
+     * @return
+     */
+    private String versionedKey(Long categoryId) {
+        List<String> versions = stringRedisTemplate.opsForValue()
+                .multiGet(Arrays.asList(VERSION_ALL_KEY, VERSION_PREFIX + categoryId));
+        String allVersion = versions.get(0) == null ? "0" : versions.get(0);
+        String categoryVersion = versions.get(1) == null ? "0" : versions.get(1);
+        return KEY_PREFIX + categoryId + ":v" + allVersion + "." + categoryVersion;
+    }
+
+    /**
+     * 清理某个分类的菜品缓存, 并通知所有节点清理本地缓存
+     * @param categoryId
+     */
+    public void evict(Long categoryId) {
+        stringRedisTemplate.opsForValue().increment(VERSION_PREFIX + categoryId);
+        publishInvalidation(KEY_PREFIX + categoryId);
+    }
+
+    /**
+     * 清理全部分类的菜品缓存, 并通知所有节点清理本地缓存
+     */
+    public void evictAll() {
+        stringRedisTemplate.opsForValue().increment(VERSION_ALL_KEY);
+        publishInvalidation(ALL_PATTERN);
+    }
+
+    private void publishInvalidation(String pattern) {
+        // 当前节点立即清理, 其他节点通过订阅消息清理
+        invalidateLocal(pattern);
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, pattern);
+    }
+
+    /**
+     * 清理本地缓存 (收到失效通知时调用)
+     * @param pattern dish_ + 分类id, 或者 dish_* 表示全部
+     */
+    public void invalidateLocal(String pattern) {
+        localVersion.incrementAndGet();
+        if (ALL_PATTERN.equals(pattern)) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(pattern);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验通过的jwt令牌缓存 (每个秘钥一个实例)
+ * ————> 同一个令牌再次请求时, 直接返回上次解析出来的 claims, 不再重复验签、解析json
+ * ————> 以令牌的签名部分作为key, 命中后再比较完整的令牌, 保证 header/payload 没有被改动
+ * ————> 每个令牌在自己的过期时间(exp)到达时从缓存中移除, 过期之后重新走解析, 由解析器拒绝
+ * 注意: 缓存中的 claims 会被多个请求共享, 只能读取, 不能修改
+ */
+public class JwtTokenCache {
+
+    private static final long MAX_SIZE = 10000;
+
+    private final JwtParser parser;
+
+    private final Cache<String, VerifiedToken> cache = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                    long remainingMillis = value.expireAt - System.currentTimeMillis();
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                }
+
+                public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    public JwtTokenCache(String secretKey) {
+        this.parser = JwtUtil.createParser(secretKey);
+    }
+
+    /**
+     * 校验令牌并返回其中的 claims, 校验不通过时抛出异常 (与 JwtUtil#parseJWT 一致)
+     * @param token
+     * @return
+     */
+    public Claims parse(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("令牌为空");
+        }
+        String signature = token.substring(token.lastIndexOf('.') + 1);
+
+        VerifiedToken verified = cache.getIfPresent(signature);
+        if (verified != null && verified.token.equals(token)) {
+            return verified.claims;
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        // 没有设置过期时间的令牌不缓存
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            cache.put(signature, new VerifiedToken(token, claims, expiration.getTime()));
+        }
+        return claims;
+    }
+
+    private static class VerifiedToken {
+
+        private final String token;
+        private final Claims claims;
+        private final long expireAt;
+
+        private VerifiedToken(String token, Claims claims, long expireAt) {
+            this.token = token;
+            this.claims = claims;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.CategoryMapper;
+import com.sky.result.Result;
+import com.sky.service.DishService;
+import com.sky.service.MenuSnapshotService;
+import com.sky.service.SetmealService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 菜单缓存预热
+ * ————> 项目启动时(在应用对外报告就绪之前), 以及店铺切换为营业中时, 提前把所有起售分类的菜品/套餐放入缓存
+ * ————> 按分类并行加载, 并发数有上限, 避免预热本身把数据库压垮
+ */
+@Component
+@Slf4j
+public class MenuCacheWarmer implements ApplicationRunner {
+
+    // 套餐缓存的名称 (与 user.SetmealController 上 @Cacheable 的 cacheNames 一致)
+    public static final String SETMEAL_CACHE = "setmealCache";
+
+    // 并发加载的分类数上限
+    private static final int CONCURRENCY = 4;
+
+    // 启动预热最多等待的时间
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY, runnable -> {
+        Thread thread = new Thread(runnable, "menu-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 同一时间只允许一次预热
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+
+    @Autowired
+    private DishService dishService;
+
+    @Autowired
+    private SetmealService setmealService;
+
+    @Autowired
+    private DishMenuCache dishMenuCache;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MenuSnapshotService menuSnapshotService;
+
+    /**
+     * 项目启动时预热 (ApplicationRunner 执行完之后, 应用才会报告为就绪状态)
+     * @param args
+     */
+    public void run(ApplicationArguments args) {
+        try {
+            warmUp().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // 预热失败不影响项目启动, 只是第一批请求会走数据库
+            log.warn("启动时菜单缓存预热未完成: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 异步预热 (店铺切换为营业中时调用), 不阻塞调用方
+     */
+    public void warmUpAsync() {
+        warmUp();
+    }
+
+    /**
+     * 预热所有起售中的分类
+     * @return 全部分类加载完成时结束
+     */
+    private CompletableFuture<Void> warmUp() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("菜单缓存预热正在进行中, 忽略本次预热");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long start = System.currentTimeMillis();
+        List<Category> categories;
+        try {
+            categories = categoryMapper.list(null);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        AtomicInteger failed = new AtomicInteger();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Category category : categories) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                long begin = System.currentTimeMillis();
+                try {
+                    warmUpCategory(category);
+                    log.debug("分类预热完成: {}({}), 耗时: {}ms",
+                            category.getName(), category.getId(), System.currentTimeMillis() - begin);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    log.warn("分类预热失败: {}({}), {}", category.getName(), category.getId(), e.getMessage());
+                }
+            }, executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenRunAsync(() -> menuSnapshotService.getSnapshot(), executor)
+                .whenComplete((result, ex) -> {
+                    running.set(false);
+                    log.info("菜单缓存预热完成, 分类数: {}, 失败数: {}, 总耗时: {}ms",
+                            categories.size(), failed.get(), System.currentTimeMillis() - start);
+                });
+    }
+
+    /**
+     * 预热一个分类: 菜品分类放入菜品缓存, 套餐分类放入套餐缓存
+     * @param category
+     */
+    private void warmUpCategory(Category category) {
+        Long categoryId = category.getId();
+        if (category.getType() != null && category.getType() == 2) {
+            Setmeal setmeal = new Setmeal();
+            setmeal.setCategoryId(categoryId);
+            setmeal.setStatus(StatusConstant.ENABLE);
+            List<Setmeal> list = setmealService.list(setmeal);
+
+            // 与 user.SetmealController#list 缓存的内容保持一致
+            Cache cache = cacheManager.getCache(SETMEAL_CACHE);
+            if (cache != null) {
+                cache.put(categoryId, Result.success(list));
+            }
+        } else {
+            dishMenuCache.get(categoryId, () -> {
+                Dish dish = new Dish();
+                dish.setCategoryId(categoryId);
+                dish.setStatus(StatusConstant.ENABLE);
+                return dishService.listWithFlavor(dish);
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,65 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 单个菜品/套餐的本地缓存 (按id), 供购物车补全 名称/图片/价格 使用
+ * ————> 菜品/套餐/分类发生变化时, 随菜单的失效通知一起清空 (见 CacheInvalidationListener)
+ */
+@Component
+public class MenuItemCache {
+
+    private static final long MAX_SIZE = 10000;
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    private final Cache<Long, Dish> dishCache = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(TTL)
+            .build();
+
+    private final Cache<Long, Setmeal> setmealCache = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterWrite(TTL)
+            .build();
+
+    /**
+     * 根据id获取菜品, 不存在时返回null
+     * @param id
+     * @return
+     */
+    public Dish getDish(Long id) {
+        return dishCache.get(id, dishMapper::getByID);
+    }
+
+    /**
+     * 根据id获取套餐, 不存在时返回null
+     * @param id
+     * @return
+     */
+    public Setmeal getSetmeal(Long id) {
+        return setmealCache.get(id, setmealMapper::getById);
+    }
+
+    /**
+     * 清空本地缓存
+     */
+    public void invalidateAll() {
+        dishCache.invalidateAll();
+        setmealCache.invalidateAll();
+    }
+}
@@ -0,0 +1,21 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 整个菜单的快照: 提前序列化好的json以及gzip压缩后的字节, 请求时直接写出, 不再做任何序列化
+ */
+@Getter
+@AllArgsConstructor
+public class MenuSnapshot {
+
+    // json字节 (客户端不支持gzip时使用)
+    private final byte[] json;
+
+    // gzip压缩后的json字节
+    private final byte[] gzip;
+
+    // 强校验的ETag (根据json内容计算)
+    private final String etag;
+}
@@ -0,0 +1,114 @@
+package com.sky.cache;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.OrderDetail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 商品销量排行榜: 每天一个redis有序集合, key为 sales:yyyyMMdd, member为商品名称, score为销量
+ * ————> 订单支付成功时 ZINCRBY 累加 (按下单日期)
+ * ————> 查询一段时间的排行时, 用 ZUNIONSTORE 合并每天的集合, 结果短时间缓存
+ * ————> 由 SalesLeaderboardTask 定时根据订单明细重新计算, 修正误差
+ */
+@Component
+public class SalesLeaderboard {
+
+    private static final String KEY_PREFIX = "sales:";
+    private static final String RANGE_KEY_PREFIX = "sales:range:";
+    private static final DateTimeFormatter KEY_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // 每天的排行保留的时间
+    private static final Duration DAY_TTL = Duration.ofDays(400);
+
+    // 一次查询最多合并的天数 (超过保留时间的数据已经过期, 合并也没有意义)
+    public static final long MAX_RANGE_DAYS = DAY_TTL.toDays();
+
+    // 合并结果的缓存时间
+    private static final Duration RANGE_TTL = Duration.ofSeconds(10);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 累加一个订单中商品的销量
+     * @param date 下单日期
+     * @param orderDetails 订单明细
+     */
+    public void add(LocalDate date, List<OrderDetail> orderDetails) {
+        String key = dayKey(date);
+        for (OrderDetail orderDetail : orderDetails) {
+            stringRedisTemplate.opsForZSet().incrementScore(key, orderDetail.getName(), orderDetail.getNumber());
+        }
+        stringRedisTemplate.expire(key, DAY_TTL);
+    }
+
+    /**
+     * 用重新统计的销量替换某一天的排行 (先写入临时key, 再 RENAME, 替换过程中查询不到不完整的数据)
+     * @param date
+     * @param sales
+     */
+    public void replace(LocalDate date, List<GoodsSalesDTO> sales) {
+        String key = dayKey(date);
+        if (sales.isEmpty()) {
+            stringRedisTemplate.delete(key);
+            return;
+        }
+        String tmpKey = key + ":rebuild";
+        stringRedisTemplate.delete(tmpKey);
+        for (GoodsSalesDTO goodsSales : sales) {
+            stringRedisTemplate.opsForZSet().add(tmpKey, goodsSales.getName(), goodsSales.getNumber());
+        }
+        stringRedisTemplate.rename(tmpKey, key);
+        stringRedisTemplate.expire(key, DAY_TTL);
+    }
+
+    /**
+     * 查询 [begin, end] 日期范围内销量最高的商品 (范围不能超过 MAX_RANGE_DAYS 天)
+     * @param begin
+     * @param end
+     * @param limit
+     * @return 按销量从高到低
+     */
+    public List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int limit) {
+        String key;
+        if (begin.equals(end)) {
+            key = dayKey(begin);
+        } else {
+            key = RANGE_KEY_PREFIX + begin.format(KEY_DATE_FORMATTER) + ":" + end.format(KEY_DATE_FORMATTER);
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+                List<String> dayKeys = new ArrayList<>();
+                for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+                    dayKeys.add(dayKey(date));
+                }
+                stringRedisTemplate.opsForZSet().unionAndStore(dayKeys.get(0), dayKeys.subList(1, dayKeys.size()), key);
+                stringRedisTemplate.expire(key, RANGE_TTL);
+            }
+        }
+
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .reverseRangeWithScores(key, 0, limit - 1);
+        if (tuples == null) {
+            return Collections.emptyList();
+        }
+        List<GoodsSalesDTO> list = new ArrayList<>(tuples.size());
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            list.add(new GoodsSalesDTO(tuple.getValue(), tuple.getScore() == null ? 0 : tuple.getScore().intValue()));
+        }
+        return list;
+    }
+
+    private static String dayKey(LocalDate date) {
+        return KEY_PREFIX + date.format(KEY_DATE_FORMATTER);
+    }
+}
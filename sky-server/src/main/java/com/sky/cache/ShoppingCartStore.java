@@ -0,0 +1,110 @@
+package com.sky.cache;
+
+import com.sky.properties.ShoppingCartProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 购物车存储: 每个用户一个redis hash, key为 cart:用户id
+ * ————> field 表示购物车中的一个商品: dish:菜品id:口味 或 setmeal:套餐id,  value 为数量
+ * ————> 数量通过 HINCRBY 原子增减, 不存在 先查再改 的并发问题
+ * ————> 名称/图片/价格不存放在购物车中, 读取时从 MenuItemCache 补全
+ * 开启异步回写时, 发生变化的用户id会记录在 cart:dirty 集合中, 由 ShoppingCartTask 定时写回数据库
+ */
+@Component
+public class ShoppingCartStore {
+
+    private static final String KEY_PREFIX = "cart:";
+    private static final String DIRTY_KEY = "cart:dirty";
+
+    public static final String DISH_FIELD_PREFIX = "dish:";
+    public static final String SETMEAL_FIELD_PREFIX = "setmeal:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+
+    /**
+     * 菜品对应的field
+     * @param dishId
+     * @param dishFlavor
+     * @return
+     */
+    public static String dishField(Long dishId, String dishFlavor) {
+        return dishFlavor == null ? DISH_FIELD_PREFIX + dishId : DISH_FIELD_PREFIX + dishId + ":" + dishFlavor;
+    }
+
+    /**
+     * 套餐对应的field
+     * @param setmealId
+     * @return
+     */
+    public static String setmealField(Long setmealId) {
+        return SETMEAL_FIELD_PREFIX + setmealId;
+    }
+
+    /**
+     * 修改购物车中商品的数量, 数量减到0及以下时从购物车中移除
+     * @param userId
+     * @param field
+     * @param delta
+     * @return 修改后的数量
+     */
+    public long increment(Long userId, String field, long delta) {
+        String key = KEY_PREFIX + userId;
+        Long number = stringRedisTemplate.opsForHash().increment(key, field, delta);
+        if (number <= 0) {
+            stringRedisTemplate.opsForHash().delete(key, field);
+        }
+        stringRedisTemplate.expire(key, shoppingCartProperties.getTtlDays(), TimeUnit.DAYS);
+        markDirty(userId);
+        return number;
+    }
+
+    /**
+     * 获取购物车中的全部商品
+     * @param userId
+     * @return field -> 数量
+     */
+    public Map<String, String> entries(Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + userId);
+        return (Map) entries;
+    }
+
+    /**
+     * 清空购物车
+     * @param userId
+     */
+    public void clear(Long userId) {
+        stringRedisTemplate.delete(KEY_PREFIX + userId);
+        markDirty(userId);
+    }
+
+    /**
+     * 取出一批需要写回数据库的用户id
+     * @param count
+     * @return
+     */
+    public List<String> popDirty(int count) {
+        List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, count);
+        return userIds == null ? Collections.emptyList() : userIds;
+    }
+
+    /**
+     * 标记用户的购物车需要写回数据库
+     * @param userId
+     */
+    public void markDirty(Long userId) {
+        if (shoppingCartProperties.isWriteBehind()) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(userId));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * redis value 的序列化器: 基于jackson的 Smile 格式 (二进制的json)
+ * ————> 相比默认的jdk序列化, 不需要写入类描述信息, 体积更小, 解析更快
+ * ————> 切换之前用jdk序列化写入的旧数据, 仍然可以正常读取
+ * 注意: 单独存放的数字不带类型信息, 较小的 Long 读出来会是 Integer, 计数器/id 一类的数据请使用 StringRedisTemplate
+ */
+public class SmileRedisSerializer implements RedisSerializer<Object> {
+
+    // jdk序列化数据的开头两个字节 (ObjectOutputStream 的 STREAM_MAGIC)
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    private final ObjectMapper objectMapper;
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    public SmileRedisSerializer() {
+        // 开启字符串值共享: 重复出现的类型信息(类名)等字符串只写一次, 之后以引用的方式写入
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        objectMapper = new ObjectMapper(smileFactory);
+        // 新增/删除字段时, 旧数据仍然可以解析
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.registerModule(new JavaTimeModule());
+        // 写入类型信息, 读取时才能还原为原来的对象 (只允许项目中的类以及常用的jdk类)
+        BasicPolymorphicTypeValidator validator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.sky.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.math.")
+                .allowIfSubType("java.time.")
+                .allowIfSubType("java.lang.")
+                .build();
+        objectMapper.activateDefaultTyping(validator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("Smile序列化失败: " + e.getMessage(), e);
+        }
+    }
+
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        // 兼容切换前写入的jdk序列化数据
+        if (bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        try {
+            return objectMapper.readValue(bytes, Object.class);
+        } catch (Exception e) {
+            throw new SerializationException("Smile反序列化失败: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.constant.MessageConstant;
+import com.sky.exception.LoginFailedException;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * jwt令牌的代数(generation)登记表, 用于让已经签发的令牌提前失效
+ * ————> 每个员工/用户在 redis 中有一个代数, 签发令牌时把当前代数写入令牌 (claims 中的 gen)
+ * ————> 需要强制下线时把代数加1, 之前签发的令牌(代数更小)全部失效
+ * ————> 拦截器校验时读取的是本地缓存, 不需要访问 redis; 代数变化后通过 redis 的发布/订阅 通知集群中所有节点更新本地缓存
+ */
+@Component
+@Slf4j
+public class TokenGenerationRegistry {
+
+    // 令牌的主体类型: 员工 / 微信用户
+    public static final String EMPLOYEE = "emp";
+    public static final String USER = "user";
+
+    // 令牌中保存代数的 claim 名称
+    public static final String GENERATION_CLAIM = "gen";
+
+    // 代数变化通知的频道, 内容为: 主体类型:id:新的代数
+    public static final String INVALIDATE_CHANNEL = "cache:invalidate:token";
+
+    // redis中代数的key前缀, 规则为: token:generation:主体类型:id
+    private static final String KEY_PREFIX = "token:generation:";
+
+    // 本地缓存的容量上限与过期时间 (过期时间兜底, 防止错过通知时一直使用旧的代数)
+    private static final long LOCAL_MAX_SIZE = 100000;
+    private static final Duration LOCAL_TTL = Duration.ofMinutes(10);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<String, Long> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAX_SIZE)
+            .expireAfterWrite(LOCAL_TTL)
+            .build();
+
+    /**
+     * 获取当前代数 (校验令牌时使用)
+     * ————> redis不可用时返回0, 不拒绝请求 (已经签发的令牌照常可用)
+     * @param type
+     * @param id
+     * @return
+     */
+    public long current(String type, Long id) {
+        String key = type + ":" + id;
+        Long generation = localCache.getIfPresent(key);
+        if (generation != null) {
+            return generation;
+        }
+        try {
+            return load(key);
+        } catch (Exception e) {
+            // redis不可用时不拒绝请求, 也不缓存, 下次再重新读取
+            log.warn("读取令牌代数失败: {}, {}", key, e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 获取当前代数 (登录签发令牌时写入令牌中)
+     * ————> redis不可用时登录失败: 不知道当前代数, 签发的令牌(代数为0)在redis恢复后会被当作已失效的令牌拒绝
+     * @param type
+     * @param id
+     * @return
+     */
+    public long currentForLogin(String type, Long id) {
+        String key = type + ":" + id;
+        Long generation = localCache.getIfPresent(key);
+        if (generation != null) {
+            return generation;
+        }
+        try {
+            return load(key);
+        } catch (Exception e) {
+            log.warn("读取令牌代数失败, 拒绝登录: {}, {}", key, e.getMessage());
+            throw new LoginFailedException(MessageConstant.LOGIN_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * 从redis中读取代数, 并放入本地缓存
+     */
+    private long load(String key) {
+        String value = stringRedisTemplate.opsForValue().get(KEY_PREFIX + key);
+        long generation = value == null ? 0L : Long.parseLong(value);
+        // 与通知并发时取较大的代数
+        return localCache.asMap().merge(key, generation, Math::max);
+    }
+
+    /**
+     * 判断令牌是否已经失效 (令牌中的代数小于当前代数)
+     * @param type
+     * @param id
+     * @param claims
+     * @return
+     */
+    public boolean isRevoked(String type, Long id, Claims claims) {
+        Object value = claims.get(GENERATION_CLAIM);
+        long generation = value == null ? 0L : Long.parseLong(value.toString());
+        return generation < current(type, id);
+    }
+
+    /**
+     * 让指定员工/用户之前签发的令牌全部失效
+     * @param type
+     * @param id
+     */
+    public void revoke(String type, Long id) {
+        String key = type + ":" + id;
+        Long generation = stringRedisTemplate.opsForValue().increment(KEY_PREFIX + key);
+        String message = key + ":" + generation;
+        // 当前节点立即更新, 其他节点通过订阅消息更新
+        applyLocal(message);
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, message);
+        log.info("令牌已失效: {}, 当前代数: {}", key, generation);
+    }
+
+    /**
+     * 更新本地缓存中的代数 (收到通知时调用), 只会增大, 不会减小
+     * @param message 主体类型:id:新的代数
+     */
+    public void applyLocal(String message) {
+        int index = message.lastIndexOf(':');
+        String key = message.substring(0, index);
+        long generation = Long.parseLong(message.substring(index + 1));
+        localCache.asMap().merge(key, generation, Math::max);
+    }
+}
@@ -0,0 +1,72 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 微信用户 openid -> 用户id 的缓存: 本地一级缓存(Caffeine) + redis二级缓存
+ * ————> 用户注册之后 openid 与用户id的对应关系不会再变化, 因此不需要失效通知, 只依靠过期时间淘汰
+ * ————> 老用户再次登录时不需要查询数据库
+ */
+@Component
+@Slf4j
+public class UserIdCache {
+
+    // redis中的key前缀, 规则为: user:openid:openid
+    private static final String KEY_PREFIX = "user:openid:";
+    private static final Duration REDIS_TTL = Duration.ofDays(7);
+
+    private static final long LOCAL_MAX_SIZE = 100000;
+    private static final Duration LOCAL_TTL = Duration.ofHours(1);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<String, Long> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAX_SIZE)
+            .expireAfterWrite(LOCAL_TTL)
+            .build();
+
+    /**
+     * 根据 openid 获取用户id, 缓存中没有时返回null
+     * @param openid
+     * @return
+     */
+    public Long get(String openid) {
+        Long userId = localCache.getIfPresent(openid);
+        if (userId != null) {
+            return userId;
+        }
+        try {
+            String value = stringRedisTemplate.opsForValue().get(KEY_PREFIX + openid);
+            if (value != null) {
+                userId = Long.valueOf(value);
+                localCache.put(openid, userId);
+            }
+        } catch (Exception e) {
+            // redis不可用时走数据库
+            log.warn("读取用户id缓存失败: {}", e.getMessage());
+        }
+        return userId;
+    }
+
+    /**
+     * 放入缓存
+     * @param openid
+     * @param userId
+     */
+    public void put(String openid, Long userId) {
+        localCache.put(openid, userId);
+        try {
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + openid, userId.toString(), REDIS_TTL);
+        } catch (Exception e) {
+            log.warn("写入用户id缓存失败: {}", e.getMessage());
+        }
+    }
+}
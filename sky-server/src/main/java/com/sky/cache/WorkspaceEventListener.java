@@ -0,0 +1,30 @@
+package com.sky.cache;
+
+import com.sky.service.WorkspaceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 监听工作台事件, 更新当前节点的工作台计数器
+ */
+@Component
+@Slf4j
+public class WorkspaceEventListener implements MessageListener {
+
+    @Autowired
+    private WorkspaceService workspaceService;
+
+    public void onMessage(Message message, byte[] pattern) {
+        String event = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            workspaceService.applyEvent(event);
+        } catch (Exception e) {
+            log.warn("工作台事件处理失败: {}, {}", event, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.sky.config;
+
+import com.sky.properties.OrderNumberProperties;
+import com.sky.utils.OrderNumberGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置类, 用于创建 OrderNumberGenerator 对象   (com.sky.utils.OrderNumberGenerator)
+ * 机器号: 优先使用配置文件中的 sky.order-number.worker-id;
+ *        没有配置时, 从redis中租用一个空闲的机器号 (SET NX + 过期时间), 并定时续约, 保证多个节点的机器号不重复
+ * ————> 租约丢失 (被其他节点占用, 或者超过租约时间没能续约) 时立即暂停生成订单号, 然后重新租用一个机器号再恢复
+ */
+@Configuration
+@Slf4j
+public class OrderNumberConfiguration {
+
+    private static final String LEASE_KEY_PREFIX = "order_number:worker:";
+
+    // 续约间隔 (秒)
+    private static final long RENEW_INTERVAL = 10;
+
+    // 只有租约仍属于当前节点时才续约 / 释放
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderNumberProperties orderNumberProperties;
+
+    // 当前节点的租约标识
+    private final String leaseToken = UUID.randomUUID().toString();
+
+    // 租用到的机器号的key, 使用配置的机器号时为null
+    private volatile String leaseKey;
+
+    // 上一次成功续约(或租用)的时间
+    private volatile long leaseRenewedAt;
+
+    private OrderNumberGenerator orderNumberGenerator;
+
+    // 续约使用单独的线程, 不与 @Scheduled 定时任务共用spring默认的单个调度线程, 避免被其他任务拖延导致租约过期
+    private ScheduledExecutorService renewExecutor;
+
+    @Bean
+    public OrderNumberGenerator orderNumberGenerator() {
+        Integer workerId = orderNumberProperties.getWorkerId();
+        if (workerId != null) {
+            log.info("开始创建订单号生成器, 机器号: {}", workerId);
+            return new OrderNumberGenerator(workerId);
+        }
+        workerId = acquireWorkerId();
+        log.info("开始创建订单号生成器, 租用的机器号: {}", workerId);
+        orderNumberGenerator = new OrderNumberGenerator(workerId);
+        renewExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-number-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewExecutor.scheduleWithFixedDelay(this::renewLease, RENEW_INTERVAL, RENEW_INTERVAL, TimeUnit.SECONDS);
+        return orderNumberGenerator;
+    }
+
+    /**
+     * 从redis中租用一个空闲的机器号
+     * @return
+     */
+    private int acquireWorkerId() {
+        for (int id = 0; id <= OrderNumberGenerator.MAX_WORKER_ID; id++) {
+            String key = LEASE_KEY_PREFIX + id;
+            Boolean success = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(key, leaseToken, orderNumberProperties.getLeaseTtl(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(success)) {
+                leaseKey = key;
+                leaseRenewedAt = System.currentTimeMillis();
+                return id;
+            }
+        }
+        throw new IllegalStateException("没有空闲的机器号, 请在配置文件中指定 sky.order-number.worker-id");
+    }
+
+    /**
+     * 定时续约机器号 (仅在租用机器号时由 renewExecutor 执行)
+     */
+    private void renewLease() {
+        String key = leaseKey;
+        long ttl = orderNumberProperties.getLeaseTtl();
+        try {
+            if (key != null) {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                        leaseToken, String.valueOf(ttl));
+                if (renewed != null && renewed == 1) {
+                    leaseRenewedAt = System.currentTimeMillis();
+                    resume(key);
+                    return;
+                }
+                // 租约已过期(例如redis长时间不可用): 如果这个机器号还没有被其他节点占用, 重新占用
+                Boolean success = stringRedisTemplate.opsForValue()
+                        .setIfAbsent(key, leaseToken, ttl, TimeUnit.SECONDS);
+                if (Boolean.TRUE.equals(success)) {
+                    log.warn("机器号租约已过期, 重新占用: {}", key);
+                    leaseRenewedAt = System.currentTimeMillis();
+                    resume(key);
+                    return;
+                }
+                // 机器号已被其他节点占用 ————> 立即暂停生成订单号, 避免与其他节点重复
+                orderNumberGenerator.suspend();
+                leaseKey = null;
+                log.error("机器号已被其他节点占用, 暂停生成订单号并重新租用机器号: {}", key);
+            }
+            int workerId = acquireWorkerId();
+            orderNumberGenerator.resume(workerId);
+            log.warn("重新租用机器号成功, 恢复生成订单号, 机器号: {}", workerId);
+        } catch (Exception e) {
+            log.warn("机器号续约失败: {}, {}", key, e.getMessage());
+            // 超过租约时间没能续约, 机器号可能已被其他节点占用 ————> 暂停生成, 直到续约成功
+            if (!orderNumberGenerator.isSuspended()
+                    && System.currentTimeMillis() - leaseRenewedAt >= TimeUnit.SECONDS.toMillis(ttl)) {
+                orderNumberGenerator.suspend();
+                log.error("超过 {} 秒没能续约机器号, 暂停生成订单号: {}", ttl, key);
+            }
+        }
+    }
+
+    // 续约成功后, 如果之前因为续约失败而暂停, 使用原来的机器号恢复
+    private void resume(String key) {
+        if (orderNumberGenerator.isSuspended()) {
+            orderNumberGenerator.resume(Long.parseLong(key.substring(LEASE_KEY_PREFIX.length())));
+            log.warn("机器号续约成功, 恢复生成订单号: {}", key);
+        }
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (renewExecutor != null) {
+            renewExecutor.shutdownNow();
+        }
+        String key = leaseKey;
+        if (key == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), leaseToken);
+        } catch (Exception e) {
+            log.warn("释放机器号失败: {}, {}", key, e.getMessage());
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package com.sky.config;
 
+import com.sky.cache.CacheInvalidationListener;
+import com.sky.cache.DishMenuCache;
+import com.sky.cache.SmileRedisSerializer;
+import com.sky.cache.TokenGenerationRegistry;
+import com.sky.cache.WorkspaceEventListener;
+import com.sky.service.impl.MenuSnapshotServiceImpl;
+import com.sky.service.impl.WorkspaceServiceImpl;
+import com.sky.websocket.WebSocketBroadcastListener;
+import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.Arrays;
+
 @Configuration // 当前为一个配置类
 @Slf4j
 public class RedisConfiguration {
 
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory){
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory, RedisSerializer<Object> redisValueSerializer){
         // 这里的 RedisConnectionFactory 连接工厂对象是 spring-boot-starter-data-redis 创建并放到Spring容器中的
 
         log.info("开始创建redis模版对象");
@@ -22,6 +38,56 @@ public class RedisConfiguration {
         redisTemplate.setConnectionFactory(redisConnectionFactory);
         // 设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        // 设置redis value的序列化器 (默认为jdk序列化, 体积大且解析慢)
+        redisTemplate.setValueSerializer(redisValueSerializer);
+        redisTemplate.setHashValueSerializer(redisValueSerializer);
         return redisTemplate;
     }
+
+    /**
+     * redis value 的序列化器, redisTemplate 和 Spring Cache 共用
+     * @return
+     */
+    @Bean
+    public RedisSerializer<Object> redisValueSerializer() {
+        return new SmileRedisSerializer();
+    }
+
+    /**
+     * Spring Cache (@Cacheable等注解) 写入redis时所使用的配置
+     * ————> 由 spring-boot-starter-cache 自动创建的 RedisCacheManager 使用
+     * @param redisValueSerializer
+     * @return
+     */
+    @Bean
+    public RedisCacheConfiguration redisCacheConfiguration(RedisSerializer<Object> redisValueSerializer) {
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer));
+    }
+
+    /**
+     * redis消息监听容器, 用于订阅缓存失效通知, WebSocket群发消息, 以及工作台事件
+     * @param redisConnectionFactory
+     * @param cacheInvalidationListener
+     * @param webSocketBroadcastListener
+     * @param workspaceEventListener
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       CacheInvalidationListener cacheInvalidationListener,
+                                                                       WebSocketBroadcastListener webSocketBroadcastListener,
+                                                                       WorkspaceEventListener workspaceEventListener) {
+        log.info("开始创建redis消息监听容器");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheInvalidationListener, Arrays.asList(
+                new ChannelTopic(DishMenuCache.INVALIDATE_CHANNEL),
+                new ChannelTopic(MenuSnapshotServiceImpl.INVALIDATE_CHANNEL),
+                new ChannelTopic(TokenGenerationRegistry.INVALIDATE_CHANNEL)));
+        container.addMessageListener(webSocketBroadcastListener, new ChannelTopic(WebSocketServer.BROADCAST_CHANNEL));
+        container.addMessageListener(workspaceEventListener, new ChannelTopic(WorkspaceServiceImpl.EVENT_CHANNEL));
+        return container;
+    }
 }
@@ -1,5 +1,6 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.DishMenuCache;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -11,11 +12,9 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * 菜品管理
@@ -30,7 +29,7 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private DishMenuCache dishMenuCache;
 
     /**
      * 新增菜品
@@ -45,8 +44,7 @@ public class DishController {
         dishService.addDishWithFlavor(dishDTO);
 
         // 精确清理缓存
-        String key = "dish_" + dishDTO.getCategoryId();
-        cleanCache(key);
+        dishMenuCache.evict(dishDTO.getCategoryId());
 
         return Result.success();
     }
@@ -80,7 +78,7 @@ public class DishController {
 
         dishService.deleteBatch(ids);
 
-        cleanCache("dish_*");
+        dishMenuCache.evictAll();
 
         return Result.success();
     }
@@ -105,7 +103,7 @@ public class DishController {
         // 在修改菜品信息时, 是可能同时修改一些口味信息的
         dishService.updateWithFlavor(dishDTO);
 
-        cleanCache("dish_*");
+        dishMenuCache.evictAll();
 
         return Result.success();
     }
@@ -121,13 +119,4 @@ public class DishController {
         List<Dish> list = dishService.list(categoryId);
         return Result.success(list);
     }
-
-    /**
-     * 将清理redis缓存的方法抽取出来
-     * @param pattern 这里实际上是传入的一个模式
-     */
-    private void cleanCache(String pattern) {
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
-    }
 }
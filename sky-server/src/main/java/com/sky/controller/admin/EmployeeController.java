@@ -1,6 +1,7 @@
 package com.sky.controller.admin;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo.None;
+import com.sky.cache.TokenGenerationRegistry;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.dto.EmployeeDTO;
 import com.sky.dto.EmployeeLoginDTO;
@@ -43,6 +44,8 @@ public class EmployeeController {
     private EmployeeService employeeService;
     @Autowired
     private JwtProperties jwtProperties; // JwtProperties是一个配置属性类
+    @Autowired
+    private TokenGenerationRegistry tokenGenerationRegistry;
 
     /**
      * 登录
@@ -64,6 +67,9 @@ public class EmployeeController {
         //登录成功后，为前端生成jwt令牌
         Map<String, Object> claims = new HashMap<>();
         claims.put(JwtClaimsConstant.EMP_ID, employee.getId());
+        // 写入当前的令牌代数, 账号被禁用后代数增加, 这个令牌随之失效
+        claims.put(TokenGenerationRegistry.GENERATION_CLAIM,
+                tokenGenerationRegistry.currentForLogin(TokenGenerationRegistry.EMPLOYEE, employee.getId()));
         String token = JwtUtil.createJWT(
                 jwtProperties.getAdminSecretKey(),
                 jwtProperties.getAdminTtl(),
@@ -1,5 +1,6 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuCacheWarmer;
 import com.sky.result.Result;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -19,6 +20,9 @@ public class ShopController {
     @Autowired
     private RedisTemplate redisTemplate;
 
+    @Autowired
+    private MenuCacheWarmer menuCacheWarmer;
+
     /**
      * 设置店铺的营业状态
      * @param status
@@ -30,7 +34,12 @@ public class ShopController {
         log.info("设置店铺的营业状态: {}", status == 1 ? "营业中" : "打烊中");
 
         // 并不涉及MySQL的操作
-        redisTemplate.opsForValue().set(KEY, status);
+        Integer oldStatus = (Integer) redisTemplate.opsForValue().getAndSet(KEY, status);
+
+        // 由打烊切换为营业中时, 预热菜单缓存, 避免开门后的第一批顾客都去查询数据库
+        if (status == 1 && !Integer.valueOf(1).equals(oldStatus)) {
+            menuCacheWarmer.warmUpAsync();
+        }
 
         return Result.success();
     }
@@ -1,5 +1,6 @@
 package com.sky.controller.user;
 
+import com.sky.cache.TokenGenerationRegistry;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
@@ -31,6 +32,9 @@ public class UserController {
     @Autowired
     private JwtProperties jwtProperties;
 
+    @Autowired
+    private TokenGenerationRegistry tokenGenerationRegistry;
+
     /**
      * 微信登录
      * @param userLoginDTO
@@ -47,6 +51,8 @@ public class UserController {
         Map<String, Object> claims = new HashMap<>();
         claims.put(JwtClaimsConstant.USER_ID, user.getId()); // 这个map中放用户的唯一标识(用户主键值)
                                                              // 在生成 JWT 令牌时，claims 中的信息会被编码到 JWT 的 payload 部分
+        claims.put(TokenGenerationRegistry.GENERATION_CLAIM,
+                tokenGenerationRegistry.currentForLogin(TokenGenerationRegistry.USER, user.getId())); // 当前的令牌代数
         String token = JwtUtil.createJWT(jwtProperties.getUserSecretKey(), jwtProperties.getUserTtl(), claims);
 
         UserLoginVO userLoginVO = UserLoginVO.builder()
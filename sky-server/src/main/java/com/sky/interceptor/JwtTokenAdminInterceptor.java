@@ -1,15 +1,17 @@
 package com.sky.interceptor;
 
+import com.sky.cache.JwtTokenCache;
+import com.sky.cache.TokenGenerationRegistry;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
 import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -23,6 +25,16 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
     @Autowired
     private JwtProperties jwtProperties;
 
+    @Autowired
+    private TokenGenerationRegistry tokenGenerationRegistry;
+
+    private JwtTokenCache tokenCache;
+
+    @PostConstruct
+    public void init() {
+        tokenCache = new JwtTokenCache(jwtProperties.getAdminSecretKey());
+    }
+
     /**
      * 校验jwt
      *
@@ -33,9 +45,6 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
      * @throws Exception
      */
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        // 获取当前线程的ID
-        System.out.println("当前线程的ID: " + Thread.currentThread().getId());
-
         //判断当前拦截到的是Controller的方法还是其他资源
         if (!(handler instanceof HandlerMethod)) {
             //当前拦截到的不是动态方法，直接放行
@@ -47,10 +56,15 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
 
         //2、校验令牌
         try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
+            // 已经校验过的令牌直接从缓存中取出 claims, 不再重复验签
+            Claims claims = tokenCache.parse(token);
             Long empId = Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
-            log.info("当前员工id：", empId);
+            // 令牌已经被强制失效 (例如账号被禁用)
+            if (tokenGenerationRegistry.isRevoked(TokenGenerationRegistry.EMPLOYEE, empId, claims)) {
+                response.setStatus(401);
+                return false;
+            }
+            log.debug("jwt校验通过, 当前员工id：{}", empId);
 
             //* 将当前员工的ID存储到 ThreadLocal 中  (存储当前线程的上下文)
             BaseContext.setCurrentId(empId);
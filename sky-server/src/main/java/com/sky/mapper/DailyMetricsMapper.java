@@ -0,0 +1,71 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyMetrics;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface DailyMetricsMapper {
+
+    /**
+     * 订单总数增加
+     * @param date
+     * @param count
+     */
+    @Insert("insert into daily_metrics (date, total_order_count) values (#{date}, #{count}) " +
+            "on duplicate key update total_order_count = total_order_count + #{count}")
+    void incrementOrderCount(LocalDate date, Integer count);
+
+    /**
+     * 新增用户数增加
+     * @param date
+     * @param count
+     */
+    @Insert("insert into daily_metrics (date, new_user_count) values (#{date}, #{count}) " +
+            "on duplicate key update new_user_count = new_user_count + #{count}")
+    void incrementNewUserCount(LocalDate date, Integer count);
+
+    /**
+     * 把一批刚完成的订单, 累加到 营业额/有效订单数 中 (按下单日期)
+     * @param orderIds
+     */
+    void addCompletedOrders(List<Long> orderIds);
+
+    /**
+     * 把 [begin, end] 日期范围内的每日经营数据清零 (重新计算之前, 保证没有数据的日期也会被修正为0)
+     * @param begin
+     * @param end
+     */
+    @Update("update daily_metrics set turnover = 0, valid_order_count = 0, total_order_count = 0, new_user_count = 0 " +
+            "where date between #{begin} and #{end}")
+    void resetMetrics(LocalDate begin, LocalDate end);
+
+    /**
+     * 根据订单表, 重新计算 [begin, end) 时间段内每天的 营业额/有效订单数/订单总数
+     * @param begin
+     * @param end
+     */
+    void rebuildOrderMetrics(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 根据用户表, 重新计算 [begin, end) 时间段内每天的新增用户数
+     * @param begin
+     * @param end
+     */
+    void rebuildUserMetrics(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 查询 [begin, end] 日期范围内的每日经营数据 (没有数据的日期不返回)
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from daily_metrics where date between #{begin} and #{end} order by date")
+    List<DailyMetrics> getByDateRange(LocalDate begin, LocalDate end);
+}
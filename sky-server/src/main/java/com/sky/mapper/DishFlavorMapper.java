@@ -37,4 +37,11 @@ public interface DishFlavorMapper {
      */
     @Select("select * from dish_flavor where dish_id = #{dishID}")
     List<DishFlavor> getByDishID(Long dishID);
+
+    /**
+     * 根据菜品的ID集合, 批量查询对应的口味 (一次查询, 避免逐个菜品查询口味)
+     * @param dishIDs
+     * @return
+     */
+    List<DishFlavor> getByDishIDs(List<Long> dishIDs);
 }
@@ -1,8 +1,14 @@
 package com.sky.mapper;
 
+import com.sky.dto.GoodsSalesDTO;
 import com.sky.entity.OrderDetail;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -13,4 +19,34 @@ public interface OrderDetailMapper {
      * @param orderDetailList
      */
     void insertBatch(List<OrderDetail> orderDetailList);
+
+    /**
+     * 流式查询下单时间在 [begin, end) 之间的订单的明细, 每查到一行就交给 resultHandler 处理
+     * @param begin
+     * @param end
+     * @param resultHandler
+     */
+    @Select("select d.* from orders o join order_detail d on d.order_id = o.id " +
+            "where o.order_time >= #{begin} and o.order_time < #{end}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    void streamByOrderTime(LocalDateTime begin, LocalDateTime end, ResultHandler<OrderDetail> resultHandler);
+
+    /**
+     * 根据订单id查询订单明细
+     * @param orderId
+     * @return
+     */
+    @Select("select * from order_detail where order_id = #{orderId}")
+    List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 统计下单时间在 [begin, end) 之间、已支付且未取消的订单中, 每个商品的销量
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select d.name, sum(d.number) number from orders o join order_detail d on d.order_id = o.id " +
+            "where o.order_time >= #{begin} and o.order_time < #{end} and o.pay_status = 1 and o.status != 6 " +
+            "group by d.name")
+    List<GoodsSalesDTO> sumPaidSalesByOrderTime(LocalDateTime begin, LocalDateTime end);
 }
@@ -1,11 +1,17 @@
 package com.sky.mapper;
 
+import com.sky.entity.DailyMetrics;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface OrderMapper {
@@ -29,6 +35,16 @@ public interface OrderMapper {
      */
     void update(Orders orders);
 
+    /**
+     * 支付成功: 修改订单状态、支付状态、结账时间 (只修改仍为未支付的订单)
+     * ————> 重复或并发的支付回调中只有一个能修改成功
+     * @param orders
+     * @return 实际修改的行数
+     */
+    @Update("update orders set status = #{status}, pay_status = #{payStatus}, checkout_time = #{checkoutTime} " +
+            "where id = #{id} and pay_status = 0")
+    int updatePaid(Orders orders);
+
     /**
      * 根据订单状态和下单时间来查询订单
      * @param status
@@ -37,4 +53,64 @@ public interface OrderMapper {
      */
     @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
+
+    /**
+     * 根据订单状态和下单时间, 按id分段查询订单id (keyset分页: 每次从上一段的最后一个id之后开始查询)
+     * @param status
+     * @param orderTime
+     * @param lastId 上一段的最后一个id, 第一段传0
+     * @param limit 每段的数量
+     * @return
+     */
+    @Select("select id from orders where status = #{status} and order_time < #{orderTime} and id > #{lastId} " +
+            "order by id limit #{limit}")
+    List<Long> getIdsByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, Long lastId, Integer limit);
+
+    /**
+     * 在当前事务中锁定 仍处于status状态 的订单 (select ... for update), 其他节点无法同时修改这些订单
+     * @param ids 订单id
+     * @param status
+     * @return 锁定的订单 (只包含 id 和 下单时间)
+     */
+    List<Orders> lockByStatus(List<Long> ids, Integer status);
+
+    /**
+     * 批量修改订单状态 (只修改仍处于 fromStatus 的订单, 查询之后状态已经发生变化的订单不受影响)
+     * @param ids 订单id
+     * @param fromStatus 修改前的状态
+     * @param orders 要修改的 状态/取消原因/取消时间
+     * @return 实际修改的行数
+     */
+    int updateStatusByIds(List<Long> ids, Integer fromStatus, Orders orders);
+
+    /**
+     * 流式查询下单时间在 [begin, end) 之间的订单, 每查到一行就交给 resultHandler 处理, 不会一次性加载到内存
+     * (fetchSize = Integer.MIN_VALUE 时, MySQL驱动逐行读取结果)
+     * @param begin
+     * @param end
+     * @param resultHandler
+     */
+    @Select("select * from orders where order_time >= #{begin} and order_time < #{end} order by order_time")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    void streamByOrderTime(LocalDateTime begin, LocalDateTime end, ResultHandler<Orders> resultHandler);
+
+    /**
+     * 按日期统计 [begin, end) 时间段内每天的 营业额/有效订单数/订单总数
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select date(order_time) date, coalesce(sum(case when status = 5 then amount end), 0) turnover, " +
+            "sum(status = 5) valid_order_count, count(*) total_order_count from orders " +
+            "where order_time >= #{begin} and order_time < #{end} group by date(order_time)")
+    List<DailyMetrics> sumMetricsByDate(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按订单状态统计 [begin, end) 时间段内的订单数
+     * @param begin
+     * @param end
+     * @return 每个状态一行: status, number
+     */
+    @Select("select status, count(*) number from orders where order_time >= #{begin} and order_time < #{end} group by status")
+    List<Map<String, Object>> countByStatus(LocalDateTime begin, LocalDateTime end);
 }
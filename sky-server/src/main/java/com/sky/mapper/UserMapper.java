@@ -1,9 +1,13 @@
 package com.sky.mapper;
 
+import com.sky.entity.DailyMetrics;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Mapper
 public interface UserMapper {
 
@@ -23,4 +27,22 @@ public interface UserMapper {
 
     @Select("select * from user where id = #{userId}")
     User getById(Long userId);
+
+    /**
+     * 按日期统计 [begin, end) 时间段内每天的新增用户数
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select date(create_time) date, count(*) new_user_count from user " +
+            "where create_time >= #{begin} and create_time < #{end} group by date(create_time)")
+    List<DailyMetrics> countNewUsersByDate(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 统计注册时间早于 time 的用户总数
+     * @param time
+     * @return
+     */
+    @Select("select count(*) from user where create_time < #{time}")
+    Integer countByCreateTimeLT(LocalDateTime time);
 }
@@ -0,0 +1,33 @@
+package com.sky.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface DailyMetricsService {
+
+    /**
+     * 记录新订单 (订单总数+1)
+     * @param orderTime 下单时间
+     */
+    void recordOrderCreated(LocalDateTime orderTime);
+
+    /**
+     * 记录一批已完成的订单 (营业额/有效订单数)
+     * @param orderIds
+     */
+    void recordOrdersCompleted(List<Long> orderIds);
+
+    /**
+     * 记录新用户 (新增用户数+1)
+     * @param createTime 注册时间
+     */
+    void recordUserCreated(LocalDateTime createTime);
+
+    /**
+     * 根据 订单/用户 表重新计算 [begin, end] 日期范围内的汇总数据
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+}
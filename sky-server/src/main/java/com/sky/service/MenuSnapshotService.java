@@ -0,0 +1,29 @@
+package com.sky.service;
+
+import com.sky.cache.MenuSnapshot;
+
+public interface MenuSnapshotService {
+
+    /**
+     * 获取整个菜单的快照 (分类 + 起售中的菜品及口味 + 起售中的套餐)
+     * @return
+     */
+    MenuSnapshot getSnapshot();
+
+    /**
+     * 某个分类下的菜单数据发生了变化, 通知集群中所有节点重新构建该分类 (事务提交后才会通知)
+     * @param categoryId
+     */
+    void invalidate(Long categoryId);
+
+    /**
+     * 分类本身发生了变化, 或者无法确定影响了哪些分类, 通知集群中所有节点重新构建整个菜单
+     */
+    void invalidateAll();
+
+    /**
+     * 收到通知后, 标记当前节点中需要重新构建的部分
+     * @param message 分类id, 或者 * 表示全部
+     */
+    void invalidateLocal(String message);
+}
@@ -0,0 +1,59 @@
+package com.sky.service;
+
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.SalesTop10ReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
+
+public interface ReportService {
+
+    /**
+     * 统计 [begin, end] 日期范围内每天的营业额
+     * @param begin
+     * @param end
+     * @return
+     */
+    TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计 [begin, end] 日期范围内每天的用户总数及新增用户数
+     * @param begin
+     * @param end
+     * @return
+     */
+    UserReportVO getUserStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计 [begin, end] 日期范围内每天的订单数及有效订单数
+     * @param begin
+     * @param end
+     * @return
+     */
+    OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 导出 [begin, end] 日期范围内的订单及订单明细 (Excel), 直接写入响应的输出流
+     * @param begin
+     * @param end
+     * @param response
+     */
+    void exportOrders(LocalDate begin, LocalDate end, HttpServletResponse response) throws IOException;
+
+    /**
+     * 查询 [begin, end] 日期范围内销量排名top10的商品
+     * @param begin
+     * @param end
+     * @return
+     */
+    SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
+
+    /**
+     * 根据订单明细重新计算某一天的销量排行
+     * @param date
+     */
+    void rebuildSalesLeaderboard(LocalDate date);
+}
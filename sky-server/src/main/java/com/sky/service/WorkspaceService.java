@@ -0,0 +1,78 @@
+package com.sky.service;
+
+import com.sky.entity.Orders;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WorkspaceService {
+
+    /**
+     * 今日运营数据
+     * @return
+     */
+    BusinessDataVO getBusinessData();
+
+    /**
+     * 今日订单概览
+     * @return
+     */
+    OrderOverViewVO getOrderOverView();
+
+    /**
+     * 菜品总览
+     * @return
+     */
+    DishOverViewVO getDishOverView();
+
+    /**
+     * 套餐总览
+     * @return
+     */
+    SetmealOverViewVO getSetmealOverView();
+
+    /**
+     * 新订单
+     * @param orders
+     */
+    void orderCreated(Orders orders);
+
+    /**
+     * 订单支付成功
+     * @param orders
+     */
+    void orderPaid(Orders orders);
+
+    /**
+     * 一批订单的状态发生变化 (只统计今天下单的订单)
+     * @param fromStatus
+     * @param toStatus
+     * @param orderTimes 这批订单的下单时间
+     */
+    void ordersStatusChanged(Integer fromStatus, Integer toStatus, List<LocalDateTime> orderTimes);
+
+    /**
+     * 新用户注册
+     */
+    void userCreated();
+
+    /**
+     * 通知所有节点根据数据库重新计算 (无法增量计算的变化, 例如订单完成后的营业额)
+     */
+    void refresh();
+
+    /**
+     * 处理其他节点(包括自己)发布的工作台事件
+     * @param event
+     */
+    void applyEvent(String event);
+
+    /**
+     * 根据数据库重新计算当前节点的计数
+     */
+    void rebuild();
+}
@@ -14,6 +14,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
 import com.sky.service.CategoryService;
+import com.sky.service.MenuSnapshotService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +35,8 @@ public class CategoryServiceImpl implements CategoryService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuSnapshotService menuSnapshotService;
 
     /**
      * 新增分类
@@ -90,6 +93,8 @@ public class CategoryServiceImpl implements CategoryService {
 
         //删除分类数据
         categoryMapper.deleteById(id);
+
+        menuSnapshotService.invalidateAll();
     }
 
     /**
@@ -106,6 +111,9 @@ public class CategoryServiceImpl implements CategoryService {
         //! 在设置了公共属性的赋值之后, 就不再需要在这里单独赋值了
 
         categoryMapper.update(category);
+
+        // 分类的名称/顺序/状态发生变化, 整个菜单快照重新构建
+        menuSnapshotService.invalidateAll();
     }
 
     /**
@@ -122,6 +130,9 @@ public class CategoryServiceImpl implements CategoryService {
                 .build();
                 //! 在设置了公共属性的赋值之后, 就不再需要在这里单独赋值了
         categoryMapper.update(category);
+
+        // 分类的名称/顺序/状态发生变化, 整个菜单快照重新构建
+        menuSnapshotService.invalidateAll();
     }
 
     /**
@@ -0,0 +1,80 @@
+package com.sky.service.impl;
+
+import com.sky.mapper.DailyMetricsMapper;
+import com.sky.service.DailyMetricsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * 每日经营数据汇总 (daily_metrics)
+ * ————> 订单状态变化/新用户注册时增量累加, 报表只需要读取汇总后的数据
+ * ————> 增量累加失败只打印日志, 不影响业务; 由 DailyMetricsTask 每晚根据原始数据重新计算, 修正误差
+ */
+@Service
+@Slf4j
+public class DailyMetricsServiceImpl implements DailyMetricsService {
+
+    @Autowired
+    private DailyMetricsMapper dailyMetricsMapper;
+
+    /**
+     * 记录新订单 (订单总数+1)
+     * @param orderTime 下单时间
+     */
+    public void recordOrderCreated(LocalDateTime orderTime) {
+        try {
+            dailyMetricsMapper.incrementOrderCount(orderTime.toLocalDate(), 1);
+        } catch (Exception e) {
+            log.warn("每日经营数据累加失败(订单总数): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录一批已完成的订单 (营业额/有效订单数)
+     * @param orderIds
+     */
+    public void recordOrdersCompleted(List<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        try {
+            dailyMetricsMapper.addCompletedOrders(orderIds);
+        } catch (Exception e) {
+            log.warn("每日经营数据累加失败(已完成订单): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录新用户 (新增用户数+1)
+     * @param createTime 注册时间
+     */
+    public void recordUserCreated(LocalDateTime createTime) {
+        try {
+            dailyMetricsMapper.incrementNewUserCount(createTime.toLocalDate(), 1);
+        } catch (Exception e) {
+            log.warn("每日经营数据累加失败(新增用户数): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 根据 订单/用户 表重新计算 [begin, end] 日期范围内的汇总数据
+     * @param begin
+     * @param end
+     */
+    @Transactional
+    public void rebuild(LocalDate begin, LocalDate end) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+
+        dailyMetricsMapper.resetMetrics(begin, end);
+        dailyMetricsMapper.rebuildOrderMetrics(beginTime, endTime);
+        dailyMetricsMapper.rebuildUserMetrics(beginTime, endTime);
+    }
+}
@@ -14,6 +14,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.result.PageResult;
 import com.sky.service.DishService;
+import com.sky.service.MenuSnapshotService;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -23,6 +24,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -37,6 +40,9 @@ public class DishServiceImpl implements DishService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private MenuSnapshotService menuSnapshotService;
+
     /**
      * 新增菜品, 以及对应的口味
      * @param dishDTO
@@ -65,6 +71,9 @@ public class DishServiceImpl implements DishService {
             // 此时, 向口味表中插入数据 ————> 实现批量插入
             dishFlavorMapper.insertBath(flavors);
         }
+
+        // 菜单快照中该分类需要重新构建
+        menuSnapshotService.invalidate(dishDTO.getCategoryId());
     }
 
     /**
@@ -116,6 +125,8 @@ public class DishServiceImpl implements DishService {
         // 批量删除菜品
         dishMapper.deleteByIDs(ids);
         dishFlavorMapper.deleteByDishIDs(ids);
+
+        menuSnapshotService.invalidateAll();
     }
 
     /**
@@ -169,6 +180,9 @@ public class DishServiceImpl implements DishService {
             // 此时, 向口味表中插入数据 ————> 实现批量插入
             dishFlavorMapper.insertBath(flavors);
         }
+
+        // 菜品可能被修改了所属分类, 整个菜单快照重新构建
+        menuSnapshotService.invalidateAll();
     }
 
     /**
@@ -193,13 +207,21 @@ public class DishServiceImpl implements DishService {
         List<Dish> dishList = dishMapper.list(dish);
 
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.size() == 0) {
+            return dishVOList;
+        }
+
+        // 一次性查出所有菜品的口味, 再按菜品id分组  (而不是每个菜品单独查一次口味, 即 N+1 次查询)
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIDs(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishID(d.getId());
+            //根据菜品id取出对应的口味
+            List<DishFlavor> flavors = flavorMap.getOrDefault(d.getId(), new ArrayList<>());
 
             dishVO.setFlavors(flavors);
             dishVOList.add(dishVO);
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.TokenGenerationRegistry;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.PasswordConstant;
 import com.sky.constant.StatusConstant;
@@ -32,6 +33,9 @@ public class EmployeeServiceImpl implements EmployeeService {
     @Autowired
     private EmployeeMapper employeeMapper;
 
+    @Autowired
+    private TokenGenerationRegistry tokenGenerationRegistry;
+
     /**
      * 员工登录
      *
@@ -155,6 +159,11 @@ public class EmployeeServiceImpl implements EmployeeService {
 
         // 实现动态更新
         employeeMapper.update(employee);
+
+        // 禁用账号时, 让该员工已经签发的令牌全部失效 (集群中所有节点立即生效)
+        if (StatusConstant.DISABLE.equals(status)) {
+            tokenGenerationRegistry.revoke(TokenGenerationRegistry.EMPLOYEE, id);
+        }
     }
 
     /**
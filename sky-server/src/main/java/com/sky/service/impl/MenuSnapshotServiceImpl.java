@@ -0,0 +1,205 @@
+package com.sky.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sky.cache.MenuSnapshot;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.mapper.CategoryMapper;
+import com.sky.service.DishService;
+import com.sky.service.MenuSnapshotService;
+import com.sky.service.SetmealService;
+import com.sky.vo.MenuCategoryVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 菜单快照
+ * ————> 每个分类单独序列化并缓存其json片段, 数据变化时只重新构建发生变化的分类, 再拼接成整个菜单
+ */
+@Service
+@Slf4j
+public class MenuSnapshotServiceImpl implements MenuSnapshotService {
+
+    // 菜单变化的通知频道
+    public static final String INVALIDATE_CHANNEL = "cache:invalidate:menu";
+
+    private static final String ALL = "*";
+
+    // 与 Spring MVC 消息转换器使用相同的对象映射器, 保证日期等格式一致
+    private final ObjectMapper objectMapper = new JacksonObjectMapper();
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+
+    @Autowired
+    private DishService dishService;
+
+    @Autowired
+    private SetmealService setmealService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 当前的快照, 为null时表示需要重新构建
+    private volatile MenuSnapshot snapshot;
+
+    // 每个分类序列化后的json片段 (key: 分类id)
+    private final Map<Long, String> fragments = new HashMap<>();
+
+    /**
+     * 获取整个菜单的快照
+     * @return
+     */
+    public MenuSnapshot getSnapshot() {
+        MenuSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        return rebuild();
+    }
+
+    /**
+     * 重新构建快照 (只有失效的分类会重新查询数据库并序列化)
+     * ————> 与 invalidateLocal 使用同一把锁, 构建过程中收到的通知会在构建完成后生效
+     * @return
+     */
+    private synchronized MenuSnapshot rebuild() {
+        if (snapshot != null) {
+            return snapshot;
+        }
+        long start = System.currentTimeMillis();
+
+        // 起售中的分类 (菜品分类 + 套餐分类)
+        List<Category> categories = categoryMapper.list(null);
+
+        StringBuilder data = new StringBuilder();
+        Map<Long, String> current = new HashMap<>();
+        int rebuilt = 0;
+        for (Category category : categories) {
+            String fragment = fragments.get(category.getId());
+            if (fragment == null) {
+                fragment = buildFragment(category);
+                rebuilt++;
+            }
+            current.put(category.getId(), fragment);
+            if (data.length() > 0) {
+                data.append(',');
+            }
+            data.append(fragment);
+        }
+        // 只保留仍然存在的分类
+        fragments.clear();
+        fragments.putAll(current);
+
+        byte[] json = ("{\"code\":1,\"msg\":null,\"data\":[" + data + "]}").getBytes(StandardCharsets.UTF_8);
+        String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        snapshot = new MenuSnapshot(json, gzip(json), etag);
+
+        log.info("菜单快照构建完成, 分类数: {}, 重新构建的分类数: {}, 耗时: {}ms",
+                categories.size(), rebuilt, System.currentTimeMillis() - start);
+        return snapshot;
+    }
+
+    /**
+     * 查询一个分类下的菜品/套餐, 并序列化为json片段
+     * @param category
+     * @return
+     */
+    private String buildFragment(Category category) {
+        MenuCategoryVO menuCategoryVO = MenuCategoryVO.builder()
+                .id(category.getId())
+                .type(category.getType())
+                .name(category.getName())
+                .sort(category.getSort())
+                .build();
+
+        if (category.getType() != null && category.getType() == 2) {
+            // 套餐分类
+            Setmeal setmeal = Setmeal.builder()
+                    .categoryId(category.getId())
+                    .status(StatusConstant.ENABLE)
+                    .build();
+            menuCategoryVO.setSetmeals(setmealService.list(setmeal));
+        } else {
+            // 菜品分类
+            Dish dish = Dish.builder()
+                    .categoryId(category.getId())
+                    .status(StatusConstant.ENABLE)
+                    .build();
+            menuCategoryVO.setDishes(dishService.listWithFlavor(dish));
+        }
+
+        try {
+            return objectMapper.writeValueAsString(menuCategoryVO);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("菜单序列化失败", e);
+        }
+    }
+
+    private byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public void invalidate(Long categoryId) {
+        publishAfterCommit(categoryId == null ? ALL : String.valueOf(categoryId));
+    }
+
+    public void invalidateAll() {
+        publishAfterCommit(ALL);
+    }
+
+    /**
+     * 在事务提交之后再发送通知, 避免其他节点在提交前重新构建, 读到旧数据
+     * @param message
+     */
+    private void publishAfterCommit(String message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    publish(message);
+                }
+            });
+        } else {
+            publish(message);
+        }
+    }
+
+    private void publish(String message) {
+        // 当前节点立即生效, 其他节点通过订阅消息生效
+        invalidateLocal(message);
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, message);
+    }
+
+    public synchronized void invalidateLocal(String message) {
+        if (ALL.equals(message)) {
+            fragments.clear();
+        } else {
+            fragments.remove(Long.valueOf(message));
+        }
+        snapshot = null;
+    }
+}
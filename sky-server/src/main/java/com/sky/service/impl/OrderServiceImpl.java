@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.cache.SalesLeaderboard;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.OrdersPaymentDTO;
@@ -11,15 +12,23 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.service.DailyMetricsService;
 import com.sky.service.OrderService;
+import com.sky.service.ShoppingCartService;
+import com.sky.service.WorkspaceService;
+import com.sky.task.OrderTimeoutQueue;
+import com.sky.utils.OrderNumberGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.websocket.WebSocketServer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -29,6 +38,7 @@ import java.util.List;
 import java.util.Map;
 
 @Service
+@Slf4j
 public class OrderServiceImpl implements OrderService {
 
     @Autowired
@@ -41,7 +51,7 @@ public class OrderServiceImpl implements OrderService {
     private AddressBookMapper addressBookMapper;
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
 
     @Autowired
     private UserMapper userMapper;
@@ -51,15 +61,34 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private WebSocketServer webSocketServer;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @Autowired
+    private DailyMetricsService dailyMetricsService;
+
+    @Autowired
+    private SalesLeaderboard salesLeaderboard;
+
+    @Autowired
+    private WorkspaceService workspaceService;
+
     /**
      * 用户下单
+     * ————> 校验相关的查询放在事务之外, 写事务只包含 订单 + 订单明细 的插入, 尽量缩短事务持有锁的时间
+     * ————> 清空购物车在事务提交之后执行
      * @param ordersSubmitDTO 传入的DTO信息
      * @return 返回给前端的VO信息
      */
-    @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
 
-        // 先处理各种业务异常 (比如: 地址为空/购物车数据为空)
+        // 先处理各种业务异常 (比如: 地址为空/购物车数据为空)  ————> 这些都只是查询, 不需要放在事务中
         //  地址为空
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
         if (addressBook == null) {
@@ -68,44 +97,65 @@ public class OrderServiceImpl implements OrderService {
         }
         //  购物车为空
         Long userId = BaseContext.getCurrentId(); // 获取当前用户ID, 用于查询购物车
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart); // 获取到购物车数据
+        List<ShoppingCart> shoppingCartList = shoppingCartService.listByUserId(userId); // 获取到购物车数据 (redis)
         if (shoppingCartList == null || shoppingCartList.size() == 0) {
             // 此时, 同样抛出异常  (购物车数据为空，不能下单)
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
-        // 数据无异常, 再执行下单操作
+        // 数据无异常, 在事务之外先把要插入的数据准备好
 
-        // 1. 向订单表插入1条数据
+        // 1. 订单数据
         Orders orders = new Orders(); // Orders实体类 (其中有很多很多的数据)
         BeanUtils.copyProperties(ordersSubmitDTO, orders); // 直接实现属性拷贝
         // 其余的一些属性就需要自己设置了
         orders.setOrderTime(LocalDateTime.now()); // 设置订单的创建时间
         orders.setPayStatus(Orders.UN_PAID); // 支付状态设置为: 未支付
         orders.setStatus(Orders.PENDING_PAYMENT); // 订单状态设置为: 代付款
-        orders.setNumber(String.valueOf(System.currentTimeMillis())); // 设置订单号 (当前系统时间的时间戳)
+        orders.setNumber(orderNumberGenerator.nextNumber()); // 设置订单号 (雪花算法, 多节点/高并发下也不会重复)
         orders.setPhone(addressBook.getPhone()); // 前面查出来的 addressBook 中是包含手机号的
         orders.setConsignee(addressBook.getConsignee()); // 设置收货人
         orders.setUserId(userId); // 设置当前订单所属的用户 (通过ThreadLocal获取)
-        // 之后, 执行插入
-        orderMapper.insert(orders); // 这里是需要返回主键值的 (返回到orders内)
 
-        // 2. 向订单明细表中插入n条数据 ————> n由购物车中的数据数量来决定
+        // 2. 订单明细数据 ————> n由购物车中的数据数量来决定
         List<OrderDetail> orderDetailList = new ArrayList<>(); // 用一个list保存所有的订单明细数据, 最终实现批量插入
         for (ShoppingCart cart : shoppingCartList) {
-            // 购物车中的每个元素都要执行一次插入
             OrderDetail orderDetail = new OrderDetail(); // 订单明细  (包装插入信息)
             BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(orders.getId()); // 手动补充订单ID信息
             orderDetailList.add(orderDetail);
         }
-        // 实现批量插入
-        orderDetailMapper.insertBatch(orderDetailList);
 
-        // 3. 下单后, 清空用户的购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
+        // 3. 开启事务, 只执行插入操作
+        transactionTemplate.executeWithoutResult(status -> {
+            orderMapper.insert(orders); // 这里是需要返回主键值的 (返回到orders内)
+
+            // 手动补充订单ID信息, 之后实现批量插入
+            orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(orders.getId()));
+            orderDetailMapper.insertBatch(orderDetailList);
+
+            // 下单后, 清空用户的购物车数据 ————> 在事务提交之后再执行
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                public void afterCommit() {
+                    try {
+                        shoppingCartService.cleanByUserId(userId);
+                    } catch (Exception e) {
+                        // 订单已经提交成功, 清空购物车失败不影响下单结果
+                        log.warn("下单后清空购物车失败, userId: {}, {}", userId, e.getMessage());
+                    }
+                    // 订单总数累加到每日经营数据中
+                    dailyMetricsService.recordOrderCreated(orders.getOrderTime());
+                    // 更新工作台的今日数据
+                    workspaceService.orderCreated(orders);
+                    try {
+                        // 加入超时延时队列, 15分钟后未支付则自动取消
+                        orderTimeoutQueue.add(orders.getId(), orders.getOrderTime());
+                    } catch (Exception e) {
+                        // 没有进入队列的订单, 由 OrderTask 的兜底任务取消
+                        log.warn("订单加入超时队列失败, orderId: {}, {}", orders.getId(), e.getMessage());
+                    }
+                }
+            });
+        });
 
         // 4. 封装VO返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -166,7 +216,28 @@ public class OrderServiceImpl implements OrderService {
                 .checkoutTime(LocalDateTime.now())
                 .build();
 
-        orderMapper.update(orders);
+        // 只修改仍为未支付的订单 ————> 重复/并发的支付回调中只有一个能修改成功, 由它执行之后的工作台/销量累加、推送
+        if (orderMapper.updatePaid(orders) != 1) {
+            log.info("订单已支付, 忽略重复的支付回调: {}", outTradeNo);
+            return;
+        }
+
+        // 已支付, 移出超时延时队列 (即使移除失败, 取消时也会校验订单状态)
+        try {
+            orderTimeoutQueue.remove(ordersDB.getId());
+        } catch (Exception e) {
+            log.warn("订单移出超时队列失败, orderId: {}, {}", ordersDB.getId(), e.getMessage());
+        }
+
+        // 更新工作台的今日数据 (只有修改成功的回调才会执行到这里, 不会重复累加)
+        workspaceService.orderPaid(ordersDB);
+
+        // 累加到商品销量排行榜
+        try {
+            salesLeaderboard.add(ordersDB.getOrderTime().toLocalDate(), orderDetailMapper.getByOrderId(ordersDB.getId()));
+        } catch (Exception e) {
+            log.warn("销量排行累加失败, orderId: {}, {}", ordersDB.getId(), e.getMessage());
+        }
 
         // 支付成功后, 通过websocket向客户端浏览器推送成功消息
         Map map = new HashMap();
@@ -0,0 +1,339 @@
+package com.sky.service.impl;
+
+import com.sky.cache.DailyMetricsCache;
+import com.sky.cache.SalesLeaderboard;
+import com.sky.constant.MessageConstant;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.DailyMetrics;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.DailyMetricsMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.ReportService;
+import com.sky.vo.OrderReportVO;
+import com.sky.vo.SalesTop10ReportVO;
+import com.sky.vo.TurnoverReportVO;
+import com.sky.vo.UserReportVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class ReportServiceImpl implements ReportService {
+
+    // SXSSF 在内存中保留的行数, 超出的行写入临时文件 ————> 无论导出多少行, 内存占用都是固定的
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String[] ORDER_HEADERS = {"订单id", "订单号", "状态", "用户id", "下单时间", "结账时间",
+            "支付方式", "支付状态", "实收金额", "备注", "手机号", "地址", "收货人", "取消原因", "拒单原因", "取消时间", "送达时间"};
+
+    private static final String[] ORDER_DETAIL_HEADERS = {"订单id", "商品名称", "菜品id", "套餐id", "口味", "数量", "金额"};
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private SalesLeaderboard salesLeaderboard;
+
+    @Autowired
+    private DailyMetricsMapper dailyMetricsMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private DailyMetricsCache dailyMetricsCache;
+
+    /**
+     * 统计 [begin, end] 日期范围内每天的营业额
+     * @param begin
+     * @param end
+     * @return
+     */
+    public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
+        List<DailyMetrics> series = getDailyMetrics(begin, end);
+
+        return TurnoverReportVO.builder()
+                .dateList(join(series, DailyMetrics::getDate))
+                .turnoverList(join(series, metrics -> metrics.getTurnover().doubleValue()))
+                .build();
+    }
+
+    /**
+     * 统计 [begin, end] 日期范围内每天的用户总数及新增用户数
+     * ————> 用户总数 = 开始日期之前的用户总数 + 逐日累加的新增用户数
+     * @param begin
+     * @param end
+     * @return
+     */
+    public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
+        List<DailyMetrics> series = getDailyMetrics(begin, end);
+
+        LocalDate today = LocalDate.now();
+        Integer totalUsers = begin.isAfter(today)
+                ? userMapper.countByCreateTimeLT(LocalDateTime.of(begin, LocalTime.MIN))
+                : dailyMetricsCache.getTotalUsersBefore(begin,
+                        date -> userMapper.countByCreateTimeLT(LocalDateTime.of(date, LocalTime.MIN)));
+        List<Integer> totalUserList = new ArrayList<>(series.size());
+        for (DailyMetrics metrics : series) {
+            totalUsers += metrics.getNewUserCount();
+            totalUserList.add(totalUsers);
+        }
+
+        return UserReportVO.builder()
+                .dateList(join(series, DailyMetrics::getDate))
+                .totalUserList(totalUserList.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                .newUserList(join(series, DailyMetrics::getNewUserCount))
+                .build();
+    }
+
+    /**
+     * 统计 [begin, end] 日期范围内每天的订单数及有效订单数
+     * @param begin
+     * @param end
+     * @return
+     */
+    public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
+        List<DailyMetrics> series = getDailyMetrics(begin, end);
+
+        int totalOrderCount = series.stream().mapToInt(DailyMetrics::getTotalOrderCount).sum();
+        int validOrderCount = series.stream().mapToInt(DailyMetrics::getValidOrderCount).sum();
+        double orderCompletionRate = totalOrderCount == 0 ? 0.0 : (double) validOrderCount / totalOrderCount;
+
+        return OrderReportVO.builder()
+                .dateList(join(series, DailyMetrics::getDate))
+                .orderCountList(join(series, DailyMetrics::getTotalOrderCount))
+                .validOrderCountList(join(series, DailyMetrics::getValidOrderCount))
+                .totalOrderCount(totalOrderCount)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .build();
+    }
+
+    /**
+     * 获取 [begin, end] 日期范围内每天的经营数据, 没有数据的日期补0
+     * ————> 今天之前的日期: 读取汇总表 daily_metrics (一次查询), 结果缓存
+     * ————> 今天及之后的日期: 直接对 订单表/用户表 各执行一次 group by 统计
+     * @param begin
+     * @param end
+     * @return 按日期排序, 每天一条
+     */
+    private List<DailyMetrics> getDailyMetrics(LocalDate begin, LocalDate end) {
+        checkDateRange(begin, end);
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, DailyMetrics> metricsMap = new HashMap<>();
+
+        // 1. 已结束的日期
+        LocalDate closedEnd = end.isBefore(today) ? end : today.minusDays(1);
+        if (!begin.isAfter(closedEnd)) {
+            metricsMap.putAll(dailyMetricsCache.getAll(begin, closedEnd, dailyMetricsMapper::getByDateRange));
+        }
+
+        // 2. 今天(及之后)的日期, 实时统计
+        if (!end.isBefore(today)) {
+            LocalDateTime beginTime = LocalDateTime.of(begin.isAfter(today) ? begin : today, LocalTime.MIN);
+            LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+            for (DailyMetrics metrics : orderMapper.sumMetricsByDate(beginTime, endTime)) {
+                metricsMap.put(metrics.getDate(), DailyMetricsCache.normalize(metrics));
+            }
+            for (DailyMetrics metrics : userMapper.countNewUsersByDate(beginTime, endTime)) {
+                metricsMap.computeIfAbsent(metrics.getDate(), DailyMetricsCache::empty)
+                        .setNewUserCount(metrics.getNewUserCount());
+            }
+        }
+
+        // 3. 按日期补齐
+        List<DailyMetrics> series = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            series.add(metricsMap.getOrDefault(date, DailyMetricsCache.empty(date)));
+        }
+        return series;
+    }
+
+    /**
+     * 校验日期范围: 开始/结束日期都不能为空, 且开始日期不能晚于结束日期
+     */
+    private static void checkDateRange(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null || begin.isAfter(end)) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_ERROR);
+        }
+    }
+
+    /**
+     * 把每天的某个指标用逗号拼接
+     */
+    private static String join(List<DailyMetrics> series, Function<DailyMetrics, Object> getter) {
+        return series.stream().map(metrics -> String.valueOf(getter.apply(metrics))).collect(Collectors.joining(","));
+    }
+
+    /**
+     * 导出 [begin, end] 日期范围内的订单及订单明细 (Excel)
+     * ————> 通过 ResultHandler 流式读取数据库, 每读到一行就写入 SXSSF 工作簿, 不会把全部数据加载到内存
+     * ————> 先校验参数, 再设置响应头; 参数错误时返回的是正常的错误信息, 而不是损坏的附件
+     * @param begin
+     * @param end
+     * @param response
+     */
+    public void exportOrders(LocalDate begin, LocalDate end, HttpServletResponse response) throws IOException {
+        checkDateRange(begin, end);
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+        long start = System.currentTimeMillis();
+
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader("Content-Disposition", "attachment; filename=orders_" + begin + "_" + end + ".xlsx");
+        OutputStream out = response.getOutputStream();
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true); // 临时文件压缩, 减少磁盘占用
+        try {
+            SheetWriter orderWriter = new SheetWriter(workbook, "订单", ORDER_HEADERS);
+            orderMapper.streamByOrderTime(beginTime, endTime, context -> {
+                Orders orders = context.getResultObject();
+                orderWriter.write(orders.getId(), orders.getNumber(), orders.getStatus(), orders.getUserId(),
+                        orders.getOrderTime(), orders.getCheckoutTime(), orders.getPayMethod(), orders.getPayStatus(),
+                        orders.getAmount(), orders.getRemark(), orders.getPhone(), orders.getAddress(),
+                        orders.getConsignee(), orders.getCancelReason(), orders.getRejectionReason(),
+                        orders.getCancelTime(), orders.getDeliveryTime());
+            });
+
+            SheetWriter detailWriter = new SheetWriter(workbook, "订单明细", ORDER_DETAIL_HEADERS);
+            orderDetailMapper.streamByOrderTime(beginTime, endTime, context -> {
+                OrderDetail orderDetail = context.getResultObject();
+                detailWriter.write(orderDetail.getOrderId(), orderDetail.getName(), orderDetail.getDishId(),
+                        orderDetail.getSetmealId(), orderDetail.getDishFlavor(), orderDetail.getNumber(),
+                        orderDetail.getAmount());
+            });
+
+            workbook.write(out);
+            out.flush();
+            log.info("订单导出完成: {} ~ {}, 订单 {} 行, 明细 {} 行, 耗时 {}ms", begin, end,
+                    orderWriter.getTotal(), detailWriter.getTotal(), System.currentTimeMillis() - start);
+        } finally {
+            // 删除临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * 查询 [begin, end] 日期范围内销量排名top10的商品 (redis 排行榜)
+     * @param begin
+     * @param end
+     * @return
+     */
+    public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
+        checkDateRange(begin, end);
+        // 每天的排行只保留 MAX_RANGE_DAYS 天, 范围过长时合并的key太多, 直接拒绝
+        if (ChronoUnit.DAYS.between(begin, end) + 1 > SalesLeaderboard.MAX_RANGE_DAYS) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_TOO_LONG);
+        }
+        List<GoodsSalesDTO> top10 = salesLeaderboard.top(begin, end, 10);
+
+        return SalesTop10ReportVO.builder()
+                .nameList(top10.stream().map(GoodsSalesDTO::getName).collect(Collectors.joining(",")))
+                .numberList(top10.stream().map(goodsSales -> String.valueOf(goodsSales.getNumber()))
+                        .collect(Collectors.joining(",")))
+                .build();
+    }
+
+    /**
+     * 根据订单明细重新计算某一天的销量排行
+     * @param date
+     */
+    public void rebuildSalesLeaderboard(LocalDate date) {
+        List<GoodsSalesDTO> sales = orderDetailMapper.sumPaidSalesByOrderTime(
+                LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date.plusDays(1), LocalTime.MIN));
+        salesLeaderboard.replace(date, sales);
+        log.info("销量排行重新计算完成: {}, 商品数: {}", date, sales.size());
+    }
+
+    /**
+     * 按行写入一个sheet, 超过Excel单个sheet的最大行数时, 自动创建下一个sheet
+     */
+    static class SheetWriter {
+
+        private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+        private final SXSSFWorkbook workbook;
+        private final String name;
+        private final String[] headers;
+        private Sheet sheet;
+        private int rowIndex;
+        private int sheetCount;
+        private long total;
+
+        SheetWriter(SXSSFWorkbook workbook, String name, String[] headers) {
+            this.workbook = workbook;
+            this.name = name;
+            this.headers = headers;
+            newSheet();
+        }
+
+        void write(Object... values) {
+            if (rowIndex >= MAX_ROWS) {
+                newSheet();
+            }
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                if (value instanceof Number && !(value instanceof Long)) {
+                    // 金额/数量等写成数字; id/订单号写成文本, 避免超过15位后丢失精度
+                    row.createCell(i).setCellValue(value instanceof BigDecimal
+                            ? ((BigDecimal) value).doubleValue() : ((Number) value).doubleValue());
+                } else if (value instanceof LocalDateTime) {
+                    row.createCell(i).setCellValue(DATE_TIME_FORMATTER.format((LocalDateTime) value));
+                } else {
+                    row.createCell(i).setCellValue(value.toString());
+                }
+            }
+            total++;
+        }
+
+        long getTotal() {
+            return total;
+        }
+
+        private void newSheet() {
+            sheetCount++;
+            sheet = workbook.createSheet(sheetCount == 1 ? name : name + "(" + sheetCount + ")");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < headers.length; i++) {
+                header.createCell(i).setCellValue(headers[i]);
+            }
+            rowIndex = 1;
+        }
+    }
+}
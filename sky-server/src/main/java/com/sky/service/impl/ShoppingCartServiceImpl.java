@@ -1,23 +1,29 @@
 package com.sky.service.impl;
 
+import com.sky.cache.MenuItemCache;
+import com.sky.cache.ShoppingCartStore;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.ShoppingCartMapper;
-import com.sky.result.Result;
 import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * 购物车数据存放在redis中 (ShoppingCartStore), 加购/查看/下单 都不再访问数据库
+ * ————> 开启异步回写时, 由 ShoppingCartTask 定时把变化写回 shopping_cart 表
+ */
 @Service
 @Slf4j
 public class ShoppingCartServiceImpl implements ShoppingCartService {
@@ -26,64 +32,30 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     private ShoppingCartMapper shoppingCartMapper;
 
     @Autowired
-    private DishMapper dishMapper;
+    private ShoppingCartStore shoppingCartStore;
 
     @Autowired
-    private SetmealMapper setmealMapper;
+    private MenuItemCache menuItemCache;
 
     /**
      * 添加购物车
      * @param shoppingCartDTO
      */
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-
-        // 需要先判断当前商品是否已经在购物车中存在
-        ShoppingCart shoppingCart = new ShoppingCart();
-        BeanUtils.copyProperties(shoppingCartDTO, shoppingCart); // 直接属性拷贝即可
         // 对于当前用户的id (user_id), 在拦截器处已经获取到了  (Threadlocal)
         Long userId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart); //# 虽然这里返回的是一个list, 但按照这里所设定的条件, 实际上是最多查出来一个元素的
-
-        // 如果已经存在, 只需要将数量+1 ————> update
-        if (list != null && list.size() > 0) {
-            ShoppingCart cart = list.get(0);
-            // 执行update操作
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
-        }
-
-        // 否则, 执行insert操作, 添加一个新的数据
-        else{
-            // 首先, 需要补全 cart 中其他的信息  (ShoppingCartDTO中仅包含了dish_id, setmeal_id, dish_flavor三个信息)
-
-            // 判断当前添加的是菜品还是套餐
-            Long dishId = shoppingCartDTO.getDishId();
-            // //Long setmealId = shoppingCartDTO.getSetmealId();
-            if (dishId != null) {
-                // 添加的是菜品
-                Dish dish = dishMapper.getByID(dishId);
-                // 利用 dishId, 查到相关的信息, 并补全 shoppingCart
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            }else {
-                // 添加的是套餐
-                Long setmealId = shoppingCartDTO.getSetmealId();
-                Setmeal setmeal = setmealMapper.getById(setmealId);
-                // 利用 setmealId, 查到相关的信息, 并补全 shoppingCart
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
-            }
-
-            // 手动补全 shoppingCart 剩余信息
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
 
-            // 统一执行插入操作
-            shoppingCartMapper.insert(shoppingCart);
+        // 判断当前添加的是菜品还是套餐, 得到购物车中对应的field
+        String field;
+        Long dishId = shoppingCartDTO.getDishId();
+        if (dishId != null) {
+            field = ShoppingCartStore.dishField(dishId, shoppingCartDTO.getDishFlavor());
+        } else {
+            field = ShoppingCartStore.setmealField(shoppingCartDTO.getSetmealId());
         }
+
+        // 已经存在则数量+1, 不存在则新增一条数量为1的数据 ————> 一条 HINCRBY 命令完成, 不需要先查询
+        shoppingCartStore.increment(userId, field, 1);
     }
 
     /**
@@ -91,14 +63,8 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      * @return
      */
     public List<ShoppingCart> showShoppingCart() {
-
         // userId 通过 ThreadLocal获取
-        Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = ShoppingCart.builder()
-                        .userId(userId)
-                        .build();
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-        return list;
+        return listByUserId(BaseContext.getCurrentId());
     }
 
     /**
@@ -106,7 +72,91 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      * ————> 同样, 前端不需要传递任何信息, 唯一的信息 userId 也可以通过ThreadLocal获取
      */
     public void cleanShoppingCart() {
-        Long userId = BaseContext.getCurrentId();
+        cleanByUserId(BaseContext.getCurrentId());
+    }
+
+    /**
+     * 查询指定用户的购物车: 从redis中取出 商品 -> 数量, 再补全名称/图片/价格
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> listByUserId(Long userId) {
+        Map<String, String> entries = shoppingCartStore.entries(userId);
+
+        List<ShoppingCart> list = new ArrayList<>(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            ShoppingCart shoppingCart = buildShoppingCart(userId, entry.getKey(), Integer.valueOf(entry.getValue()));
+            if (shoppingCart != null) {
+                list.add(shoppingCart);
+            }
+        }
+        // hash中的数据是无序的, 按 菜品在前、套餐在后, id从小到大 的顺序返回
+        list.sort(Comparator.comparing((ShoppingCart cart) -> cart.getDishId() == null)
+                .thenComparing(cart -> cart.getDishId() != null ? cart.getDishId() : cart.getSetmealId())
+                .thenComparing(cart -> cart.getDishFlavor() != null ? cart.getDishFlavor() : ""));
+        return list;
+    }
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    public void cleanByUserId(Long userId) {
+        shoppingCartStore.clear(userId);
+    }
+
+    /**
+     * 把指定用户的购物车写回数据库: 先删除该用户原有的数据, 再批量插入当前的数据
+     * @param userId
+     */
+    @Transactional
+    public void flushToDatabase(Long userId) {
+        List<ShoppingCart> list = listByUserId(userId);
+        LocalDateTime now = LocalDateTime.now();
+        list.forEach(cart -> cart.setCreateTime(now));
+
         shoppingCartMapper.deleteByUserId(userId);
+        if (!list.isEmpty()) {
+            shoppingCartMapper.insertBatch(list);
+        }
+    }
+
+    /**
+     * 根据购物车中的field, 构造购物车数据
+     * @param userId
+     * @param field
+     * @param number
+     * @return 对应的菜品/套餐已经不存在时, 返回null
+     */
+    private ShoppingCart buildShoppingCart(Long userId, String field, Integer number) {
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .userId(userId)
+                .number(number)
+                .build();
+
+        if (field.startsWith(ShoppingCartStore.DISH_FIELD_PREFIX)) {
+            // 菜品: dish:菜品id:口味 (口味可能为空, 口味本身也可能包含 ":")
+            String[] parts = field.split(":", 3);
+            Dish dish = menuItemCache.getDish(Long.valueOf(parts[1]));
+            if (dish == null) {
+                return null;
+            }
+            shoppingCart.setDishId(dish.getId());
+            shoppingCart.setDishFlavor(parts.length > 2 ? parts[2] : null);
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        } else {
+            // 套餐: setmeal:套餐id
+            Setmeal setmeal = menuItemCache.getSetmeal(Long.valueOf(field.substring(ShoppingCartStore.SETMEAL_FIELD_PREFIX.length())));
+            if (setmeal == null) {
+                return null;
+            }
+            shoppingCart.setSetmealId(setmeal.getId());
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
+        }
+        return shoppingCart;
     }
 }
@@ -0,0 +1,340 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.DailyMetrics;
+import com.sky.entity.Orders;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.WorkspaceService;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+import com.sky.websocket.WebSocketServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 工作台 (今日数据)
+ * ————> 今日订单数(按状态)/营业额/新增用户数 保存在内存计数器(LongAdder)中, 查询时不访问数据库
+ * ————> 订单状态变化时, 通过redis频道把事件发布给所有节点, 每个节点更新自己的计数器,
+ *       并通过 WebSocket 把变化量推送给连接在本节点上的管理端 (不进入补发列表), 工作台页面不需要轮询
+ * ————> 事件在单独的线程中发布, 不占用下单/支付/登录请求的线程
+ * ————> 启动时、每天零点以及每隔5分钟, 根据数据库重新计算一次 (见 WorkspaceTask), 修正误差
+ */
+@Service
+@Slf4j
+public class WorkspaceServiceImpl implements WorkspaceService {
+
+    // 工作台事件的频道
+    public static final String EVENT_CHANNEL = "workspace:event";
+
+    private static final String EVENT_CREATED = "created";
+    private static final String EVENT_PAID = "paid";
+    private static final String EVENT_STATUS = "status";
+    private static final String EVENT_USER = "user";
+    private static final String EVENT_REFRESH = "refresh";
+
+    // 推送给管理端的消息类型 (1表示来单提醒, 2表示客户催单, 3表示工作台数据变化)
+    private static final int MESSAGE_TYPE_WORKSPACE = 3;
+
+    // 等待发布的事件数上限, 超过时丢弃 (由定时重新计算修正)
+    private static final int EVENT_QUEUE_CAPACITY = 1000;
+
+    // 发布事件的线程 (单线程, 保证事件的顺序)
+    private final ThreadPoolExecutor eventExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(EVENT_QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "workspace-event");
+                thread.setDaemon(true);
+                return thread;
+            }, (runnable, executor) -> log.warn("工作台事件过多, 丢弃本次事件"));
+
+    // 每个订单状态一个计数器, 下标为状态值 (1 ~ 6)
+    private final LongAdder[] statusCounters = new LongAdder[Orders.CANCELLED + 1];
+
+    // 今日营业额 (单位: 分)
+    private final LongAdder turnoverCents = new LongAdder();
+
+    // 今日新增用户数
+    private final LongAdder newUsers = new LongAdder();
+
+    // 计数器对应的日期
+    private volatile LocalDate day = LocalDate.now();
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    public WorkspaceServiceImpl() {
+        for (int i = 0; i < statusCounters.length; i++) {
+            statusCounters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 今日运营数据
+     * @return
+     */
+    public BusinessDataVO getBusinessData() {
+        long total = allOrders();
+        long valid = count(Orders.COMPLETED);
+        double turnover = BigDecimal.valueOf(turnoverCents.sum(), 2).doubleValue();
+
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount((int) valid)
+                .orderCompletionRate(total == 0 ? 0.0 : (double) valid / total)
+                .unitPrice(valid == 0 ? 0.0 : turnover / valid)
+                .newUsers((int) newUsers.sum())
+                .build();
+    }
+
+    /**
+     * 今日订单概览
+     * @return
+     */
+    public OrderOverViewVO getOrderOverView() {
+        return OrderOverViewVO.builder()
+                .waitingOrders((int) count(Orders.TO_BE_CONFIRMED))
+                .deliveredOrders((int) count(Orders.CONFIRMED))
+                .completedOrders((int) count(Orders.COMPLETED))
+                .cancelledOrders((int) count(Orders.CANCELLED))
+                .allOrders((int) allOrders())
+                .build();
+    }
+
+    /**
+     * 菜品总览 (菜品表很小, 直接查询)
+     * @return
+     */
+    public DishOverViewVO getDishOverView() {
+        return DishOverViewVO.builder()
+                .sold(dishMapper.countByStatus(StatusConstant.ENABLE))
+                .discontinued(dishMapper.countByStatus(StatusConstant.DISABLE))
+                .build();
+    }
+
+    /**
+     * 套餐总览 (套餐表很小, 直接查询)
+     * @return
+     */
+    public SetmealOverViewVO getSetmealOverView() {
+        return SetmealOverViewVO.builder()
+                .sold(setmealMapper.countByStatus(StatusConstant.ENABLE))
+                .discontinued(setmealMapper.countByStatus(StatusConstant.DISABLE))
+                .build();
+    }
+
+    /**
+     * 新订单
+     * @param orders
+     */
+    public void orderCreated(Orders orders) {
+        if (isToday(orders.getOrderTime())) {
+            publish(EVENT_CREATED);
+        }
+    }
+
+    /**
+     * 订单支付成功 (待付款 -> 待接单)
+     * @param orders
+     */
+    public void orderPaid(Orders orders) {
+        if (isToday(orders.getOrderTime())) {
+            publish(EVENT_PAID);
+        }
+    }
+
+    /**
+     * 一批订单的状态发生变化 (只统计今天下单的订单, 例如昨天下单、今天超时取消的订单不影响今日数据)
+     * @param fromStatus
+     * @param toStatus
+     * @param orderTimes 这批订单的下单时间
+     */
+    public void ordersStatusChanged(Integer fromStatus, Integer toStatus, List<LocalDateTime> orderTimes) {
+        int count = (int) orderTimes.stream().filter(this::isToday).count();
+        if (count == 0) {
+            return;
+        }
+        publish(EVENT_STATUS + ":" + fromStatus + ":" + toStatus + ":" + count);
+    }
+
+    /**
+     * 新用户注册
+     */
+    public void userCreated() {
+        publish(EVENT_USER);
+    }
+
+    /**
+     * 通知所有节点根据数据库重新计算
+     */
+    public void refresh() {
+        publish(EVENT_REFRESH);
+    }
+
+    /**
+     * 处理工作台事件, 更新当前节点的计数器, 并把变化量推送给连接在本节点上的管理端
+     * @param event
+     */
+    public void applyEvent(String event) {
+        String[] parts = event.split(":");
+        Map<String, Object> changes = new HashMap<>();
+        switch (parts[0]) {
+            case EVENT_CREATED:
+                statusCounters[Orders.PENDING_PAYMENT].increment();
+                changes.put("allOrders", 1);
+                break;
+            case EVENT_PAID:
+                statusCounters[Orders.PENDING_PAYMENT].decrement();
+                statusCounters[Orders.TO_BE_CONFIRMED].increment();
+                changes.put("waitingOrders", 1);
+                break;
+            case EVENT_STATUS:
+                int fromStatus = Integer.parseInt(parts[1]);
+                int toStatus = Integer.parseInt(parts[2]);
+                int count = Integer.parseInt(parts[3]);
+                statusCounters[fromStatus].add(-count);
+                statusCounters[toStatus].add(count);
+                putChange(changes, fromStatus, -count);
+                putChange(changes, toStatus, count);
+                break;
+            case EVENT_USER:
+                newUsers.increment();
+                changes.put("newUsers", 1);
+                break;
+            case EVENT_REFRESH:
+                rebuild();
+                changes.put("refresh", true);
+                break;
+            default:
+                log.warn("未知的工作台事件: {}", event);
+                return;
+        }
+
+        if (!changes.isEmpty()) {
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", MESSAGE_TYPE_WORKSPACE);
+            message.put("changes", changes);
+            webSocketServer.sendToLocalClients(JSON.toJSONString(message));
+        }
+    }
+
+    /**
+     * 根据数据库重新计算当前节点的计数
+     */
+    public synchronized void rebuild() {
+        LocalDate today = LocalDate.now();
+        LocalDateTime begin = LocalDateTime.of(today, LocalTime.MIN);
+        LocalDateTime end = LocalDateTime.of(today.plusDays(1), LocalTime.MIN);
+
+        long[] counts = new long[statusCounters.length];
+        for (Map<String, Object> row : orderMapper.countByStatus(begin, end)) {
+            int status = ((Number) row.get("status")).intValue();
+            if (status > 0 && status < counts.length) {
+                counts[status] = ((Number) row.get("number")).longValue();
+            }
+        }
+        List<DailyMetrics> metrics = orderMapper.sumMetricsByDate(begin, end);
+        BigDecimal turnover = metrics.isEmpty() || metrics.get(0).getTurnover() == null
+                ? BigDecimal.ZERO : metrics.get(0).getTurnover();
+        List<DailyMetrics> users = userMapper.countNewUsersByDate(begin, end);
+        long newUserCount = users.isEmpty() ? 0 : users.get(0).getNewUserCount();
+
+        // 用 重新计算的值 - 当前值 修正计数器 (LongAdder 不支持直接赋值)
+        for (int i = 1; i < statusCounters.length; i++) {
+            statusCounters[i].add(counts[i] - statusCounters[i].sum());
+        }
+        turnoverCents.add(turnover.movePointRight(2).longValue() - turnoverCents.sum());
+        newUsers.add(newUserCount - newUsers.sum());
+        day = today;
+        log.info("工作台数据重新计算完成: {}", getOrderOverView());
+    }
+
+    /**
+     * 在单独的线程中发布事件给所有节点 (每个节点收到后更新计数器, 并推送给自己的管理端)
+     * ————> redis不可用时, 只更新当前节点
+     */
+    private void publish(String event) {
+        eventExecutor.execute(() -> {
+            try {
+                stringRedisTemplate.convertAndSend(EVENT_CHANNEL, event);
+            } catch (Exception e) {
+                log.warn("工作台事件发布失败, 只更新当前节点: {}, {}", event, e.getMessage());
+                applyEvent(event);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventExecutor.shutdownNow();
+    }
+
+    private long count(Integer status) {
+        return statusCounters[status].sum();
+    }
+
+    private long allOrders() {
+        long total = 0;
+        for (int i = 1; i < statusCounters.length; i++) {
+            total += statusCounters[i].sum();
+        }
+        return total;
+    }
+
+    private boolean isToday(LocalDateTime time) {
+        return time != null && time.toLocalDate().equals(day);
+    }
+
+    /**
+     * 订单状态变化对应的 订单概览 字段的变化量
+     */
+    private static void putChange(Map<String, Object> changes, int status, int delta) {
+        String field = null;
+        if (status == Orders.TO_BE_CONFIRMED) {
+            field = "waitingOrders";
+        } else if (status == Orders.CONFIRMED) {
+            field = "deliveredOrders";
+        } else if (status == Orders.COMPLETED) {
+            field = "completedOrders";
+        } else if (status == Orders.CANCELLED) {
+            field = "cancelledOrders";
+        }
+        if (field != null) {
+            changes.put(field, delta);
+        }
+    }
+}
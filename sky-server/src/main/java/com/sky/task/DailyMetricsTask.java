@@ -0,0 +1,41 @@
+package com.sky.task;
+
+import com.sky.cache.DailyMetricsCache;
+import com.sky.service.DailyMetricsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 定时任务类, 每晚根据原始数据重新计算最近几天的每日经营数据, 修正增量累加时可能出现的误差
+ */
+@Component
+@Slf4j
+public class DailyMetricsTask {
+
+    // 重新计算的天数 (包括昨天)
+    private static final int REBUILD_DAYS = 3;
+
+    @Autowired
+    private DailyMetricsService dailyMetricsService;
+
+    @Autowired
+    private DailyMetricsCache dailyMetricsCache;
+
+    /**
+     * 重新计算最近几天的每日经营数据
+     */
+    @Scheduled(cron = "0 30 1 * * ?") // 每天凌晨一点半触发 (在"派送中"订单处理完成之后)
+    public void rebuildDailyMetrics() {
+        LocalDate end = LocalDate.now().minusDays(1);
+        LocalDate begin = end.minusDays(REBUILD_DAYS - 1);
+        long start = System.currentTimeMillis();
+        dailyMetricsService.rebuild(begin, end);
+        // 重新计算的日期, 清理报表缓存
+        dailyMetricsCache.invalidate(begin, end);
+        log.info("每日经营数据重新计算完成: {} ~ {}, 耗时 {}ms", begin, end, System.currentTimeMillis() - start);
+    }
+}
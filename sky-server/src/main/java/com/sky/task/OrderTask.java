@@ -2,44 +2,57 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.service.DailyMetricsService;
+import com.sky.service.WorkspaceService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * 定时任务类, 定时处理订单状态
+ * ————> 不再把所有订单查出来逐条 update, 而是按id分段 (每段最多 BATCH_SIZE 条) 批量修改状态
+ *       即使积压了大量订单 (例如服务停机后), 每条sql涉及的行数也是有上限的
  */
 @Component // 表示当前的类也需要实例化, 并交给Spring容器管理
 @Slf4j
 public class OrderTask {
 
+    // 每段处理的订单数
+    private static final int BATCH_SIZE = 500;
+
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private DailyMetricsService dailyMetricsService;
+
+    @Autowired
+    private WorkspaceService workspaceService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * 处理超时订单的方法
+     * ————> 超时订单正常情况下由 OrderTimeoutQueue 准时取消, 这里只是低频的兜底 (处理没有进入延时队列的订单)
      */
-    @Scheduled(cron = "0 * * * * ?") // 每分钟触发一次
+    @Scheduled(cron = "0 0/30 * * * ?") // 每30分钟触发一次
     public void processTimeoutOrder() {
-        log.info("定时处理超时订单: {}", LocalDateTime.now());
+        log.info("定时处理超时订单(兜底): {}", LocalDateTime.now());
 
-        // 先把超时的订单查出来
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, LocalDateTime.now().plusMinutes(-15));// 当前时间 - 15分钟
-
-        if(ordersList != null && ordersList.size() > 0) {
-            for(Orders order : ordersList) {
-                order.setStatus(Orders.CANCELLED);
-                order.setCancelReason("订单超时, 自动取消");
-                order.setCancelTime(LocalDateTime.now());
-
-                // 之后, 再更新回去
-                orderMapper.update(order);
-            }
-        }
+        Orders orders = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason("订单超时, 自动取消")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        // 当前时间 - 15分钟 之前下单, 仍未支付的订单
+        updateStatusInBatches(Orders.PENDING_PAYMENT, LocalDateTime.now().minus(OrderTimeoutQueue.ORDER_TIMEOUT), orders, "超时订单取消");
     }
 
     /**
@@ -49,14 +62,81 @@ public class OrderTask {
     public void processDeliveryOrder() {
         log.info("处理一直处于\"派送中\"状态的订单: {}", LocalDateTime.now());
 
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, LocalDateTime.now().plusMinutes(-60));// 查昨天的一直在派送中的订单
+        Orders orders = Orders.builder()
+                .status(Orders.COMPLETED)
+                .build();
+        // 查昨天的一直在派送中的订单
+        updateStatusInBatches(Orders.DELIVERY_IN_PROGRESS, LocalDateTime.now().plusMinutes(-60), orders, "派送中订单完成");
+    }
 
-        if (ordersList != null && ordersList.size() > 0) {
-            for(Orders order : ordersList) {
-                order.setStatus(Orders.COMPLETED);
-                // 之后, 再更新回去
-                orderMapper.update(order);
+    /**
+     * 把 下单时间早于orderTime 且 状态为fromStatus 的订单, 按id分段批量修改
+     * @param fromStatus 修改前的状态
+     * @param orderTime 下单时间的上限
+     * @param orders 要修改的内容
+     * @param taskName 任务名称, 用于日志
+     * @return 修改的订单数
+     */
+    private int updateStatusInBatches(Integer fromStatus, LocalDateTime orderTime, Orders orders, String taskName) {
+        long start = System.currentTimeMillis();
+        int scanned = 0;
+        int updated = 0;
+        int batches = 0;
+        Long lastId = 0L;
+
+        while (true) {
+            List<Long> ids = orderMapper.getIdsByStatusAndOrderTimeLT(fromStatus, orderTime, lastId, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            // 每一段单独提交, 不会长时间持有大量行锁
+            List<Orders> updatedOrders = transactionTemplate.execute(status -> updateStatus(ids, fromStatus, orders));
+            if (!updatedOrders.isEmpty() && !Orders.COMPLETED.equals(orders.getStatus())) {
+                // 更新工作台的今日数据 (只统计今天下单的订单)
+                workspaceService.ordersStatusChanged(fromStatus, orders.getStatus(),
+                        updatedOrders.stream().map(Orders::getOrderTime).collect(Collectors.toList()));
             }
+            updated += updatedOrders.size();
+            scanned += ids.size();
+            batches++;
+            lastId = ids.get(ids.size() - 1);
+            if (ids.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+
+        // 订单完成会影响营业额, 工作台的今日数据需要重新计算
+        if (updated > 0 && Orders.COMPLETED.equals(orders.getStatus())) {
+            workspaceService.refresh();
+        }
+
+        if (scanned > 0) {
+            log.info("{}: 查询到 {} 条, 实际修改 {} 条, 分 {} 段, 耗时 {}ms",
+                    taskName, scanned, updated, batches, System.currentTimeMillis() - start);
+        }
+        return updated;
+    }
+
+    /**
+     * 修改一段订单的状态 (在事务中执行)
+     * ————> 先锁定仍处于fromStatus的订单, 只修改并统计当前节点锁定的这些订单;
+     *       多个节点同时执行定时任务时, 同一个订单只会被一个节点修改, 不会重复累加到每日经营数据中
+     * @param ids
+     * @param fromStatus
+     * @param orders
+     * @return 修改的订单 (只包含 id 和 下单时间)
+     */
+    private List<Orders> updateStatus(List<Long> ids, Integer fromStatus, Orders orders) {
+        List<Orders> lockedOrders = orderMapper.lockByStatus(ids, fromStatus);
+        if (lockedOrders.isEmpty()) {
+            return lockedOrders;
+        }
+        List<Long> lockedIds = lockedOrders.stream().map(Orders::getId).collect(Collectors.toList());
+        orderMapper.updateStatusByIds(lockedIds, fromStatus, orders);
+        if (Orders.COMPLETED.equals(orders.getStatus())) {
+            // 订单完成, 累加到每日经营数据中 (与状态修改在同一个事务中)
+            dailyMetricsService.recordOrdersCompleted(lockedIds);
         }
+        return lockedOrders;
     }
 }
@@ -0,0 +1,152 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.WorkspaceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 订单超时延时队列: redis 有序集合, member 为订单id, score 为订单的超时时刻(毫秒)
+ * ————> 下单时加入队列, 支付成功时移出队列
+ * ————> 每秒取出一次已经到期的订单并取消, 不需要每分钟扫描订单表, 取消的时间误差在1秒左右
+ * ————> 多个节点同时取到同一个订单时, 以 ZREM 成功的节点为准, 同一个订单只会被处理一次
+ * ————> 轮询使用单独的线程, 不与 @Scheduled 定时任务共用spring默认的单个调度线程, 互不拖延
+ * OrderTask 中保留一个低频的兜底任务, 处理因redis异常等原因没有进入队列的订单
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue {
+
+    // 订单超时时间: 下单后15分钟未支付, 自动取消
+    public static final Duration ORDER_TIMEOUT = Duration.ofMinutes(15);
+
+    private static final String KEY = "order:timeout";
+
+    // 每次最多取出的到期订单数
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private WorkspaceService workspaceService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ScheduledExecutorService pollExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-timeout-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        // 上一次执行结束1秒后再次执行
+        pollExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                processExpiredOrder();
+            } catch (Exception e) {
+                // 抛出异常会导致之后不再执行, 这里只记录日志 (例如redis暂时不可用), 下一秒继续轮询
+                log.warn("延时队列轮询失败: {}", e.getMessage());
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pollExecutor.shutdownNow();
+    }
+
+    /**
+     * 订单加入延时队列
+     * @param orderId
+     * @param orderTime 下单时间
+     */
+    public void add(Long orderId, LocalDateTime orderTime) {
+        long deadline = orderTime.plus(ORDER_TIMEOUT)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        stringRedisTemplate.opsForZSet().add(KEY, String.valueOf(orderId), deadline);
+    }
+
+    /**
+     * 订单移出延时队列 (支付成功)
+     * @param orderId
+     */
+    public void remove(Long orderId) {
+        stringRedisTemplate.opsForZSet().remove(KEY, String.valueOf(orderId));
+    }
+
+    /**
+     * 取出到期的订单, 并取消
+     */
+    public void processExpiredOrder() {
+        Set<String> members;
+        do {
+            members = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(KEY, 0, System.currentTimeMillis(), 0, BATCH_SIZE);
+            if (members == null || members.isEmpty()) {
+                return;
+            }
+
+            // 抢占: 只处理自己成功移出队列的订单
+            List<Long> ids = new ArrayList<>(members.size());
+            for (String member : members) {
+                Long removed = stringRedisTemplate.opsForZSet().remove(KEY, member);
+                if (removed != null && removed > 0) {
+                    ids.add(Long.valueOf(member));
+                }
+            }
+            if (ids.isEmpty()) {
+                continue;
+            }
+
+            Orders orders = Orders.builder()
+                    .status(Orders.CANCELLED)
+                    .cancelReason("订单超时, 自动取消")
+                    .cancelTime(LocalDateTime.now())
+                    .build();
+            try {
+                // 只取消仍处于待付款状态的订单 (先锁定, 才能知道实际取消了哪些订单)
+                List<Orders> cancelled = transactionTemplate.execute(status -> {
+                    List<Orders> lockedOrders = orderMapper.lockByStatus(ids, Orders.PENDING_PAYMENT);
+                    if (!lockedOrders.isEmpty()) {
+                        orderMapper.updateStatusByIds(lockedOrders.stream().map(Orders::getId).collect(Collectors.toList()),
+                                Orders.PENDING_PAYMENT, orders);
+                    }
+                    return lockedOrders;
+                });
+                log.info("延时队列取消超时订单: 到期 {} 条, 实际取消 {} 条", ids.size(), cancelled.size());
+                // 更新工作台的今日数据 (只统计今天下单的订单)
+                workspaceService.ordersStatusChanged(Orders.PENDING_PAYMENT, Orders.CANCELLED,
+                        cancelled.stream().map(Orders::getOrderTime).collect(Collectors.toList()));
+            } catch (Exception e) {
+                // 取消失败, 放回队列稍后重试
+                log.warn("延时队列取消超时订单失败, 稍后重试: {}, {}", ids, e.getMessage());
+                long retryAt = System.currentTimeMillis() + 5000;
+                ids.forEach(id -> stringRedisTemplate.opsForZSet().add(KEY, String.valueOf(id), retryAt));
+                return;
+            }
+        } while (members.size() == BATCH_SIZE);
+    }
+}
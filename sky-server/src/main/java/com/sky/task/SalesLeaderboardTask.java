@@ -0,0 +1,28 @@
+package com.sky.task;
+
+import com.sky.service.ReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 定时任务类, 根据订单明细重新计算前一天的销量排行, 修正实时累加时可能出现的误差
+ */
+@Component
+@Slf4j
+public class SalesLeaderboardTask {
+
+    @Autowired
+    private ReportService reportService;
+
+    /**
+     * 重新计算前一天的销量排行
+     */
+    @Scheduled(cron = "0 0 2 * * ?") // 每天凌晨两点触发
+    public void rebuildSalesLeaderboard() {
+        reportService.rebuildSalesLeaderboard(LocalDate.now().minusDays(1));
+    }
+}
@@ -0,0 +1,57 @@
+package com.sky.task;
+
+import com.sky.cache.ShoppingCartStore;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 定时任务类, 把redis中发生变化的购物车写回数据库 (sky.shopping-cart.write-behind 为 true 时才开启)
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.shopping-cart", name = "write-behind", havingValue = "true")
+@Slf4j
+public class ShoppingCartTask {
+
+    @Autowired
+    private ShoppingCartStore shoppingCartStore;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+
+    /**
+     * 回写购物车
+     */
+    @Scheduled(fixedDelay = 30000) // 上一次执行结束30秒后再次执行
+    public void flushShoppingCart() {
+        int batchSize = shoppingCartProperties.getFlushBatchSize();
+        int flushed = 0;
+        List<String> userIds;
+        do {
+            // 先从集合中取出, 再读取购物车 ————> 回写期间购物车又发生变化时, 用户id会被重新放回集合, 下一轮再写
+            userIds = shoppingCartStore.popDirty(batchSize);
+            for (String userId : userIds) {
+                try {
+                    shoppingCartService.flushToDatabase(Long.valueOf(userId));
+                    flushed++;
+                } catch (Exception e) {
+                    log.warn("购物车回写失败, userId: {}, {}", userId, e.getMessage());
+                    shoppingCartStore.markDirty(Long.valueOf(userId));
+                }
+            }
+        } while (userIds.size() == batchSize);
+
+        if (flushed > 0) {
+            log.info("购物车回写完成, 用户数: {}", flushed);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sky.task;
+
+import com.sky.service.WorkspaceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时任务类, 根据数据库重新计算工作台的今日数据 (项目启动时、每天零点、每隔5分钟)
+ */
+@Component
+@Slf4j
+public class WorkspaceTask implements ApplicationRunner {
+
+    @Autowired
+    private WorkspaceService workspaceService;
+
+    /**
+     * 项目启动时计算
+     * @param args
+     */
+    public void run(ApplicationArguments args) {
+        rebuild();
+    }
+
+    /**
+     * 每天零点切换到新的一天, 每隔5分钟修正一次误差
+     */
+    @Scheduled(cron = "0 0/5 * * * ?")
+    public void rebuild() {
+        try {
+            workspaceService.rebuild();
+        } catch (Exception e) {
+            log.warn("工作台数据重新计算失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 监听群发消息的redis频道, 发送给连接在当前节点上的WebSocket客户端
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcastListener implements MessageListener {
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    public void onMessage(Message message, byte[] pattern) {
+        String envelope = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            webSocketServer.deliver(envelope);
+        } catch (Exception e) {
+            log.warn("群发消息处理失败: {}, {}", envelope, e.getMessage());
+        }
+    }
+}
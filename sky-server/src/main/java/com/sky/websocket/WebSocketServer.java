@@ -1,33 +1,138 @@
 package com.sky.websocket;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * WebSocket服务
+ * ————> 会话存放在 ConcurrentHashMap 中, 建立/断开连接 与 群发 可以并发进行
+ * ————> 群发时只把消息放入每个会话自己的发送队列, 由专门的线程池通过 getAsyncRemote 异步发送, 不阻塞调用方 (例如支付回调)
+ * ————> 发送队列有容量上限, 队列满了或者发送失败/超时的客户端(接收太慢), 直接断开连接, 不影响其他客户端
+ * 多节点部署时, 群发的消息先发布到 redis 频道, 每个节点收到后再发送给连接在本节点上的客户端 (见 WebSocketBroadcastListener)
+ * ————> 每条消息都有一个全局递增的id (INCR), 同一个客户端不会重复收到同一条消息
+ * ————> 分配id、写入补发列表、发布 通过一个lua脚本完成 (一次往返), 并且在单独的线程中执行, 不阻塞调用方
+ * ————> 最近的消息保存在 redis 列表中, 客户端重新连接时带上 lastId 参数 (/ws/{sid}?lastId=xx), 可以补发断线期间错过的消息
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
 
+    // 每个会话的发送队列容量
+    private static final int SEND_QUEUE_CAPACITY = 100;
+
+    // 单条消息的发送超时时间 (毫秒)
+    private static final long SEND_TIMEOUT_MS = 5000;
+
+    // 发送消息的线程池 (每个 @ServerEndpoint 连接都会创建一个新的实例, 因此使用静态变量)
+    private static final ExecutorService SEND_EXECUTOR = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "websocket-send-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // 群发消息的频道, 消息id, 以及补发用的最近消息列表
+    public static final String BROADCAST_CHANNEL = "ws:broadcast";
+    private static final String MESSAGE_ID_KEY = "ws:message:id";
+    private static final String REPLAY_KEY = "ws:replay";
+    private static final int REPLAY_SIZE = 100;
+
+    // 分配消息id, 写入补发列表, 再发布到频道  (ARGV[1] 为json字符串形式的消息内容)
+    private static final RedisScript<Long> BROADCAST_SCRIPT = new DefaultRedisScript<>(
+            "local id = redis.call('incr', KEYS[1]) " +
+                    "local envelope = '{\"id\":' .. id .. ',\"message\":' .. ARGV[1] .. '}' " +
+                    "redis.call('lpush', KEYS[2], envelope) " +
+                    "redis.call('ltrim', KEYS[2], 0, tonumber(ARGV[2]) - 1) " +
+                    "redis.call('publish', ARGV[3], envelope) " +
+                    "return id", Long.class);
+
+    // 等待发布的群发消息数上限, 超过时只发送给本节点的客户端
+    private static final int PUBLISH_QUEUE_CAPACITY = 1000;
+
+    // 发布群发消息的线程 (单线程, 本节点的消息按调用顺序发布)
+    private static final ThreadPoolExecutor PUBLISH_EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(PUBLISH_QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "websocket-publish");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+    // 每个会话记录最近收到的消息id数量, 用于去重
+    private static final int DELIVERED_ID_CAPACITY = 200;
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static final Map<String, ClientSession> sessionMap = new ConcurrentHashMap<>();
+
+    // @ServerEndpoint 的实例由容器创建, 不能直接注入, 通过静态变量共享
+    private static StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    public void setStringRedisTemplate(StringRedisTemplate stringRedisTemplate) {
+        WebSocketServer.stringRedisTemplate = stringRedisTemplate;
+    }
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        log.info("客户端: {} 建立连接", sid);
+        session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MS);
+        ClientSession clientSession = new ClientSession(sid, session);
+        ClientSession old = sessionMap.put(sid, clientSession);
+        if (old != null) {
+            // 同一个客户端重复连接, 关闭之前的连接
+            old.close(CloseReason.CloseCodes.NORMAL_CLOSURE);
+        }
+
+        // 客户端带上了最后收到的消息id, 补发之后的消息 (先加入sessionMap再补发, 期间的新消息通过id去重)
+        List<String> lastIds = session.getRequestParameterMap().get("lastId");
+        if (lastIds != null && !lastIds.isEmpty()) {
+            try {
+                replay(clientSession, Long.parseLong(lastIds.get(0)));
+            } catch (Exception e) {
+                log.warn("补发消息失败: {}, {}", sid, e.getMessage());
+            }
+        }
     }
 
     /**
@@ -37,7 +142,7 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端: {} 的信息: {}", sid, message);
     }
 
     /**
@@ -46,26 +151,229 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开: {}", sid);
+        remove(sid, session);
+    }
+
+    /**
+     * 连接出错调用的方法
+     */
+    @OnError
+    public void onError(Session session, @PathParam("sid") String sid, Throwable error) {
+        log.warn("连接异常: {}, {}", sid, error.getMessage());
+        remove(sid, session);
     }
 
     /**
      * 群发   (这里的这个方法就需要主动调用了)
+     * ————> 在单独的线程中生成消息id, 保存到补发列表, 再发布到redis频道, 由所有节点发送给各自的客户端; 调用方立即返回
+     * ————> redis不可用时, 只发送给本节点的客户端
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
+        try {
+            PUBLISH_EXECUTOR.execute(() -> {
+                try {
+                    stringRedisTemplate.execute(BROADCAST_SCRIPT, Arrays.asList(MESSAGE_ID_KEY, REPLAY_KEY),
+                            JSON.toJSONString(message), String.valueOf(REPLAY_SIZE), BROADCAST_CHANNEL);
+                } catch (Exception e) {
+                    log.warn("发布群发消息失败, 只发送给本节点的客户端: {}", e.getMessage());
+                    sendToLocalClient(null, message);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("等待发布的群发消息过多, 只发送给本节点的客户端");
+            sendToLocalClient(null, message);
+        }
+    }
+
+    /**
+     * 只发送给连接在本节点上的客户端, 不分配消息id, 也不进入补发列表
+     * ————> 用于可以丢失、不需要补发的消息 (例如工作台数据变化), 不会把来单提醒/催单从补发列表中挤出去
+     * ————> 只是把消息放入各个会话的发送队列, 立即返回
+     *
+     * @param message
+     */
+    public void sendToLocalClients(String message) {
+        sendToLocalClient(null, message);
+    }
+
+    /**
+     * 把从redis频道收到的消息, 发送给连接在本节点上的客户端
+     * ————> 只是把消息放入各个会话的发送队列, 立即返回
+     *
+     * @param envelope
+     */
+    public void deliver(String envelope) {
+        JSONObject jsonObject = JSON.parseObject(envelope);
+        sendToLocalClient(jsonObject.getLong("id"), jsonObject.getString("message"));
+    }
+
+    private void sendToLocalClient(Long id, String message) {
+        String payload = withMessageId(id, message);
+        for (ClientSession clientSession : sessionMap.values()) {
+            clientSession.send(id, payload);
+        }
+    }
+
+    /**
+     * 补发 lastId 之后的消息 (按id从小到大)
+     */
+    private static void replay(ClientSession clientSession, long lastId) {
+        List<String> envelopes = stringRedisTemplate.opsForList().range(REPLAY_KEY, 0, REPLAY_SIZE - 1);
+        if (envelopes == null || envelopes.isEmpty()) {
+            return;
+        }
+        // 多个节点写入列表的顺序与id的顺序不一定一致, 按id排序
+        TreeMap<Long, String> messages = new TreeMap<>();
+        for (String envelope : envelopes) {
+            JSONObject jsonObject = JSON.parseObject(envelope);
+            Long id = jsonObject.getLong("id");
+            if (id != null && id > lastId) {
+                messages.put(id, jsonObject.getString("message"));
+            }
+        }
+        messages.forEach((id, message) -> clientSession.send(id, withMessageId(id, message)));
+        log.info("客户端: {} 补发消息 {} 条", clientSession.sid, messages.size());
+    }
+
+    /**
+     * json对象格式的消息, 加上 messageId 字段, 客户端重新连接时作为 lastId 传回
+     */
+    private static String withMessageId(Long id, String message) {
+        if (id == null || message == null || !message.startsWith("{")) {
+            return message;
+        }
+        try {
+            return JSON.parseObject(message).fluentPut("messageId", id).toJSONString();
+        } catch (Exception e) {
+            return message;
+        }
+    }
+
+    /**
+     * 当前的连接数
+     * @return
+     */
+    public int getSessionCount() {
+        return sessionMap.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PUBLISH_EXECUTOR.shutdownNow();
+        SEND_EXECUTOR.shutdownNow();
+    }
+
+    /**
+     * 移除会话 (只移除与当前连接对应的会话, 不会误删同一个sid重新建立的连接)
+     */
+    private static void remove(String sid, Session session) {
+        sessionMap.computeIfPresent(sid, (key, clientSession) -> clientSession.session == session ? null : clientSession);
+    }
+
+    /**
+     * 一个客户端会话, 以及它的发送队列
+     * ————> 同一个会话同一时间只有一条消息在发送 (getAsyncRemote 不允许并发发送), 发送完成后再发送下一条
+     */
+    private static class ClientSession {
+
+        private final String sid;
+        private final Session session;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(SEND_QUEUE_CAPACITY);
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+
+        // 最近发送过的消息id (去重)
+        private final Set<Long> deliveredIds = Collections.newSetFromMap(new LinkedHashMap<Long, Boolean>() {
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > DELIVERED_ID_CAPACITY;
+            }
+        });
+
+        ClientSession(String sid, Session session) {
+            this.sid = sid;
+            this.session = session;
+        }
+
+        /**
+         * 消息放入发送队列, 已经发送过的消息id直接忽略
+         */
+        void send(Long id, String message) {
+            if (id != null) {
+                synchronized (deliveredIds) {
+                    if (!deliveredIds.add(id)) {
+                        return;
+                    }
+                }
+            }
+            if (!queue.offer(message)) {
+                evict("发送队列已满");
+                return;
+            }
+            schedule();
+        }
+
+        /**
+         * 当前没有正在发送的消息时, 提交给线程池发送
+         */
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    SEND_EXECUTOR.execute(this::sendNext);
+                } catch (Exception e) {
+                    sending.set(false);
+                }
+            }
+        }
+
+        /**
+         * 发送队列中的下一条消息, 发送完成的回调中再发送下一条
+         */
+        private void sendNext() {
+            String message = queue.poll();
+            if (message == null) {
+                sending.set(false);
+                // 释放标记的同时可能有新消息入队, 再检查一次
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+                return;
+            }
+            if (!session.isOpen()) {
+                evict("连接已关闭");
+                return;
+            }
             try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
+                session.getAsyncRemote().sendText(message, result -> {
+                    if (result.isOK()) {
+                        SEND_EXECUTOR.execute(this::sendNext);
+                    } else {
+                        evict("发送失败: " + result.getException().getMessage());
+                    }
+                });
             } catch (Exception e) {
-                e.printStackTrace();
+                evict("发送失败: " + e.getMessage());
             }
         }
-    }
 
+        /**
+         * 接收太慢/异常的客户端: 断开连接并移除
+         */
+        private void evict(String reason) {
+            log.warn("移除WebSocket客户端: {}, {}", sid, reason);
+            queue.clear();
+            remove(sid, session);
+            close(CloseReason.CloseCodes.TRY_AGAIN_LATER);
+        }
+
+        private void close(CloseReason.CloseCode closeCode) {
+            try {
+                session.close(new CloseReason(closeCode, null));
+            } catch (IOException e) {
+                log.debug("关闭WebSocket连接失败: {}, {}", sid, e.getMessage());
+            }
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.sky.wechat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 简单的熔断器
+ * ————> 连续失败达到阈值后打开, 打开期间的调用直接失败, 不再等待远程接口
+ * ————> 打开一段时间后进入半开状态, 只放行一个试探请求: 成功则关闭, 失败则重新打开
+ */
+class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    // 连续失败的次数
+    private final AtomicInteger failures = new AtomicInteger();
+
+    // 熔断打开的截止时间, 0 表示关闭
+    private volatile long openUntil;
+
+    // 半开状态下是否已经有试探请求
+    private final AtomicBoolean trial = new AtomicBoolean(false);
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否允许本次调用
+     * @return
+     */
+    boolean allowRequest() {
+        long until = openUntil;
+        if (until == 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() < until) {
+            return false;
+        }
+        // 半开: 只放行一个试探请求
+        return trial.compareAndSet(false, true);
+    }
+
+    void recordSuccess() {
+        failures.set(0);
+        openUntil = 0;
+        trial.set(false);
+    }
+
+    void recordFailure() {
+        if (failures.incrementAndGet() >= failureThreshold || trial.get()) {
+            openUntil = System.currentTimeMillis() + openMillis;
+            trial.set(false);
+        }
+    }
+
+    /**
+     * 试探请求没有真正执行时, 让出试探的机会
+     */
+    void releaseTrial() {
+        trial.set(false);
+    }
+
+    boolean isOpen() {
+        return openUntil != 0;
+    }
+}
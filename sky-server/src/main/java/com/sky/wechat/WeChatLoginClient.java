@@ -0,0 +1,158 @@
+package com.sky.wechat;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.constant.MessageConstant;
+import com.sky.exception.LoginFailedException;
+import com.sky.properties.WeChatProperties;
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 调用微信接口, 根据登录时的 code 获取微信用户的 openid
+ * ————> 远程调用放在单独的线程池(舱壁)中执行, 线程数和排队数都有上限; 微信接口变慢时, 最多占用这些线程,
+ *       不会把 Tomcat 的工作线程全部卡住, 下单等其他接口不受影响
+ * ————> 排队已满、等待超时、熔断打开时直接登录失败, 不再等待
+ * ————> code 在有效期(5分钟)内缓存对应的 openid, 客户端重试时不再重复调用微信接口; 同一个 code 同时只有一次远程调用
+ */
+@Component
+@Slf4j
+public class WeChatLoginClient {
+
+    // 微信服务接口地址
+    public static final String WX_LOGIN = "https://api.weixin.qq.com/sns/jscode2session";
+
+    // 舱壁: 调用微信接口的线程数, 以及排队的请求数上限
+    private static final int CONCURRENCY = 16;
+    private static final int QUEUE_CAPACITY = 64;
+
+    // 登录请求最多等待的时间
+    private static final long TIMEOUT_MILLIS = 3000;
+
+    // 连续失败多少次后熔断, 以及熔断持续的时间
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_MILLIS = 10000;
+
+    // code 的有效期为5分钟, 且只能使用一次
+    private static final Duration CODE_TTL = Duration.ofMinutes(5);
+    private static final long CODE_MAX_SIZE = 10000;
+
+    @Autowired
+    private WeChatProperties weChatProperties;
+
+    private final ThreadPoolExecutor executor;
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS);
+
+    // code -> openid (调用失败或者 code 无效时不缓存)
+    private final AsyncCache<String, String> openidCache = Caffeine.newBuilder()
+            .maximumSize(CODE_MAX_SIZE)
+            .expireAfterWrite(CODE_TTL)
+            .buildAsync();
+
+    public WeChatLoginClient() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(CONCURRENCY, CONCURRENCY, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "wechat-login-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 根据 code 获取 openid, code 无效时返回 null
+     * @param code 登录时获取的 code，可通过wx.login获取
+     * @return
+     */
+    public String getOpenId(String code) {
+        if (code == null || code.isEmpty()) {
+            return null;
+        }
+        CompletableFuture<String> future;
+        try {
+            future = openidCache.get(code, (key, ignored) -> {
+                if (!circuitBreaker.allowRequest()) {
+                    throw new RejectedExecutionException("微信登录接口已熔断");
+                }
+                try {
+                    return CompletableFuture.supplyAsync(() -> requestOpenId(key), executor);
+                } catch (RejectedExecutionException e) {
+                    // 没有真正发出请求, 如果是半开状态的试探请求, 让出试探的机会
+                    circuitBreaker.releaseTrial();
+                    throw e;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("微信登录快速失败: {}, 排队数: {}", e.getMessage(), executor.getQueue().size());
+            throw new LoginFailedException(MessageConstant.LOGIN_BUSY);
+        }
+
+        try {
+            return future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 远程调用仍在舱壁线程中继续, 完成后的结果留在缓存中, 客户端重试时可以直接使用
+            log.warn("微信登录等待超时: {}ms", TIMEOUT_MILLIS);
+            throw new LoginFailedException(MessageConstant.LOGIN_BUSY);
+        } catch (ExecutionException e) {
+            log.warn("微信登录失败: {}", e.getCause().getMessage());
+            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        }
+    }
+
+    /**
+     * 调用微信接口 (在舱壁线程中执行)
+     * @param code
+     * @return openid, code 无效时返回 null
+     */
+    private String requestOpenId(String code) {
+        // map即为要发送的信息, 而具体信息有什么, 一共有四个, 可以看postMan
+        Map<String, String> map = new HashMap<>();
+        map.put("appid", weChatProperties.getAppid());
+        map.put("secret", weChatProperties.getSecret());
+        map.put("js_code", code);
+        map.put("grant_type", "authorization_code");
+        String json = HttpClientUtil.doGet(WX_LOGIN, map);
+
+        // 没有拿到响应(网络错误、超时、非200): 记为一次失败
+        if (json == null || json.isEmpty()) {
+            circuitBreaker.recordFailure();
+            throw new IllegalStateException("微信登录接口无响应" + (circuitBreaker.isOpen() ? ", 已熔断" : ""));
+        }
+        circuitBreaker.recordSuccess();
+
+        // 利用 fastjson.JSON 对 json 进行解析, 把里面的 openId 拿出来; code 无效时微信返回 errcode, 没有 openid
+        JSONObject jsonObject = JSON.parseObject(json);
+        String openid = jsonObject.getString("openid");
+        if (openid == null) {
+            log.info("微信登录code无效: {}", jsonObject.getString("errmsg"));
+        }
+        return openid;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,6 @@
+-- 订单表索引
+-- 定时任务/延时队列按 状态 + 下单时间 查询订单 (OrderMapper.getIdsByStatusAndOrderTimeLT, getByStatusAndOrderTimeLT)
+create index idx_orders_status_order_time on orders (status, order_time);
+
+-- 支付回调按订单号查询订单 (OrderMapper.getByNumber), 订单号同时需要保证唯一
+create unique index uk_orders_number on orders (number);
@@ -0,0 +1,25 @@
+-- 每日经营数据汇总 (报表直接读取汇总后的数据, 不再扫描订单表)
+-- 商品销量排行由 redis 中的每日销量排行榜提供 (SalesLeaderboard), 不需要汇总表
+create table daily_metrics
+(
+    date              date           not null comment '日期',
+    turnover          decimal(12, 2) not null default 0 comment '营业额 (已完成订单的金额)',
+    valid_order_count int            not null default 0 comment '有效订单数 (已完成)',
+    total_order_count int            not null default 0 comment '订单总数',
+    new_user_count    int            not null default 0 comment '新增用户数',
+    update_time       datetime       not null default current_timestamp on update current_timestamp comment '更新时间',
+    primary key (date)
+) comment '每日经营数据';
+
+-- 根据已有的数据初始化
+insert into daily_metrics (date, turnover, valid_order_count, total_order_count)
+select date(order_time), coalesce(sum(case when status = 5 then amount end), 0), sum(status = 5), count(*)
+from orders
+group by date(order_time);
+
+insert into daily_metrics (date, new_user_count)
+select date(create_time), count(*)
+from user
+where create_time is not null
+group by date(create_time)
+on duplicate key update new_user_count = values(new_user_count);
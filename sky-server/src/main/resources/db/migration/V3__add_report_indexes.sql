@@ -0,0 +1,5 @@
+-- 报表/导出按下单时间范围查询订单
+create index idx_orders_order_time on orders (order_time);
+
+-- 根据订单id查询订单明细
+create index idx_order_detail_order_id on order_detail (order_id);
@@ -0,0 +1,3 @@
+-- 微信登录按 openid 查询用户; openid 唯一, 同一个微信用户同时首次登录时不会重复注册
+-- (执行前如果已经存在重复的 openid, 需要先人工合并这些用户)
+create unique index uk_user_openid on user (openid);
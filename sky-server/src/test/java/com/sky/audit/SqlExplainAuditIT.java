@@ -0,0 +1,69 @@
+package com.sky.audit;
+
+import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceAutoConfigure;
+import com.sky.properties.SqlAuditProperties;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.annotation.MapperScan;
+import org.mybatis.spring.boot.autoconfigure.MybatisAutoConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在统计信息接近真实的库上检查 mapper 中查询语句的执行计划 (SqlExplainAuditor)
+ * 默认的 mvn test 不执行, 使用: mvn -Psql-audit test -pl sky-server -am -Dsky.datasource.host=... -Dsky.datasource.database=...
+ * ————> 只启动 数据源 + flyway + mybatis, 先执行数据库迁移 (索引与线上一致), 再 ANALYZE TABLE 刷新统计信息
+ * ————> 热点表的数据量小于 min-rows 时直接失败: 空库上的执行计划没有参考价值
+ */
+@SpringBootTest(classes = SqlExplainAuditIT.AuditConfiguration.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"sky.sql-audit.enabled=true", "sky.sql-audit.fail-on-full-scan=false"})
+class SqlExplainAuditIT {
+
+    @Configuration
+    @ImportAutoConfiguration({DruidDataSourceAutoConfigure.class, FlywayAutoConfiguration.class,
+            MybatisAutoConfiguration.class})
+    @MapperScan("com.sky.mapper")
+    @Import({SqlExplainAuditor.class, SqlAuditProperties.class})
+    static class AuditConfiguration {
+    }
+
+    @Autowired
+    private SqlExplainAuditor sqlExplainAuditor;
+
+    @Autowired
+    private SqlAuditProperties sqlAuditProperties;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void hotTableQueriesDoNotScanTheWholeTable() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String hotTable : sqlAuditProperties.getHotTables()) {
+                String table = hotTable.trim();
+                statement.execute("analyze table " + table);
+                try (ResultSet rs = statement.executeQuery("select count(*) from " + table)) {
+                    rs.next();
+                    long rows = rs.getLong(1);
+                    assertTrue(rows >= sqlAuditProperties.getMinRows(), () -> "热点表 " + table + " 只有 " + rows
+                            + " 行, 请在数据量接近线上的库(例如线上数据的副本)上执行");
+                }
+            }
+        }
+
+        List<String> violations = sqlExplainAuditor.audit();
+        assertTrue(violations.isEmpty(), () -> "热点表全表扫描:\n" + String.join("\n", violations));
+    }
+}
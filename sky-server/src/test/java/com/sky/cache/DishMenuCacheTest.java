@@ -0,0 +1,128 @@
+package com.sky.cache;
+
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DishMenuCacheTest {
+
+    @Mock
+    private RedisTemplate redisTemplate;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations valueOperations;
+
+    @Mock
+    private ValueOperations<String, String> stringValueOperations;
+
+    @InjectMocks
+    private DishMenuCache dishMenuCache;
+
+    @Test
+    void waitersSeeTheLoaderExceptionUnwrapped() throws Exception {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.opsForValue()).thenReturn(stringValueOperations);
+        when(stringValueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, null));
+        when(stringValueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch waiterJoined = new CountDownLatch(1);
+        IllegalArgumentException failure = new IllegalArgumentException("db down");
+        AtomicInteger loads = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<DishVO>> loader = executor.submit(() -> dishMenuCache.get(1L, () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(waiterJoined);
+                throw failure;
+            }));
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+            // 第二个线程等待第一个线程的加载结果, 而不是自己再去加载
+            Future<List<DishVO>> waiter = executor.submit(() -> dishMenuCache.get(1L, () -> {
+                loads.incrementAndGet();
+                return null;
+            }));
+            Thread.sleep(200);
+            waiterJoined.countDown();
+
+            assertSame(failure, cause(loader));
+            assertSame(failure, cause(waiter));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loadedValueIsWrittenBackAndServedLocally() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.opsForValue()).thenReturn(stringValueOperations);
+        when(stringValueOperations.multiGet(anyList())).thenReturn(Arrays.asList("2", null));
+        when(stringValueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        List<DishVO> menu = Arrays.asList(new DishVO());
+        AtomicInteger loads = new AtomicInteger();
+
+        assertSame(menu, dishMenuCache.get(1L, () -> {
+            loads.incrementAndGet();
+            return menu;
+        }));
+        assertSame(menu, dishMenuCache.get(1L, () -> {
+            loads.incrementAndGet();
+            return menu;
+        }));
+
+        assertEquals(1, loads.get());
+        verify(valueOperations).set(eq("dish_1:v2.0"), eq(menu), any(Duration.class));
+    }
+
+    private static Throwable cause(Future<?> future) {
+        return assertThrows(ExecutionException.class,
+                () -> future.get(5, TimeUnit.SECONDS)).getCause();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
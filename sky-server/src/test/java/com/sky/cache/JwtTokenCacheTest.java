@@ -0,0 +1,99 @@
+package com.sky.cache;
+
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtTokenCacheTest {
+
+    private static final String SECRET = "itcast";
+
+    private final JwtTokenCache jwtTokenCache = new JwtTokenCache(SECRET);
+
+    @Test
+    void repeatedTokenIsServedFromCache() {
+        String token = token(SECRET, 60_000);
+
+        Claims first = jwtTokenCache.parse(token);
+        assertEquals(1, first.get("empId"));
+        assertSame(first, jwtTokenCache.parse(token));
+
+        // 与每次都重新解析的结果一致
+        assertEquals(JwtUtil.parseJWT(SECRET, token), first);
+    }
+
+    @Test
+    void tamperedPayloadWithCachedSignatureIsRejected() {
+        String token = token(SECRET, 60_000);
+        jwtTokenCache.parse(token);
+
+        // 换成另一个用户id的payload, 沿用已经缓存的签名
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("\"empId\":1", "\"empId\":2");
+        String forged = parts[0] + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + parts[2];
+
+        assertThrows(SignatureException.class, () -> jwtTokenCache.parse(forged));
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() {
+        String token = token("another", 60_000);
+
+        assertThrows(SignatureException.class, () -> jwtTokenCache.parse(token));
+    }
+
+    @Test
+    void cachedTokenIsRejectedOnceExpired() throws InterruptedException {
+        String token = token(SECRET, 1000);
+        jwtTokenCache.parse(token);
+
+        Thread.sleep(1500);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtTokenCache.parse(token));
+    }
+
+    @Test
+    void cachedParseIsFasterThanVerifying() {
+        String token = token(SECRET, 60_000);
+        int rounds = 20_000;
+        // 预热
+        for (int i = 0; i < 5_000; i++) {
+            JwtUtil.parseJWT(SECRET, token);
+            jwtTokenCache.parse(token);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            JwtUtil.parseJWT(SECRET, token);
+        }
+        long uncached = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            jwtTokenCache.parse(token);
+        }
+        long cached = System.nanoTime() - start;
+
+        System.out.printf("jwt解析 %d 次: 每次验签 %.2fus/次, 缓存命中 %.2fus/次%n",
+                rounds, uncached / 1000.0 / rounds, cached / 1000.0 / rounds);
+    }
+
+    private static String token(String secretKey, long ttlMillis) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("empId", 1);
+        return JwtUtil.createJWT(secretKey, ttlMillis, claims);
+    }
+}
@@ -0,0 +1,83 @@
+package com.sky.cache;
+
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmileRedisSerializerTest {
+
+    private final SmileRedisSerializer serializer = new SmileRedisSerializer();
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    @Test
+    void dishMenuRoundTripsAndIsSmallerThanJdk() {
+        List<DishVO> menu = dishMenu(20);
+
+        byte[] smile = serializer.serialize(menu);
+        byte[] jdk = jdkSerializer.serialize(menu);
+        System.out.printf("20个菜品(每个3种口味): Smile %d 字节, jdk序列化 %d 字节%n", smile.length, jdk.length);
+
+        assertEquals(menu, serializer.deserialize(smile));
+        assertTrue(smile.length < jdk.length);
+    }
+
+    @Test
+    void cachedSetmealResultRoundTrips() {
+        // 与 user.SetmealController 上 @Cacheable 缓存的值一致: Result<List<Setmeal>>
+        Setmeal setmeal = Setmeal.builder().id(1L).categoryId(2L).name("套餐A").price(new BigDecimal("58.00"))
+                .status(1).updateTime(LocalDateTime.of(2024, 1, 1, 12, 30)).build();
+        Result<List<Setmeal>> result = Result.success(new ArrayList<>(Arrays.asList(setmeal)));
+
+        assertEquals(result, serializer.deserialize(serializer.serialize(result)));
+    }
+
+    @Test
+    void readsValuesWrittenByJdkSerializer() {
+        // 切换序列化器之前写入redis的旧数据
+        List<DishVO> menu = dishMenu(3);
+
+        assertEquals(menu, serializer.deserialize(jdkSerializer.serialize(menu)));
+    }
+
+    @Test
+    void nullAndEmpty() {
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    private static List<DishVO> dishMenu(int count) {
+        List<DishVO> menu = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            DishVO dishVO = new DishVO();
+            dishVO.setId(id);
+            dishVO.setName("菜品" + id);
+            dishVO.setCategoryId(1L);
+            dishVO.setPrice(new BigDecimal("28.50"));
+            dishVO.setImage("https://sky-take-out.oss-cn-beijing.aliyuncs.com/dish/" + id + ".png");
+            dishVO.setDescription("招牌菜");
+            dishVO.setStatus(1);
+            dishVO.setUpdateTime(LocalDateTime.of(2024, 1, 1, 12, 30));
+            for (String name : Arrays.asList("辣度", "忌口", "温度")) {
+                dishVO.getFlavors().add(DishFlavor.builder().id(id * 10).dishId(id).name(name)
+                        .value("[\"不要葱\",\"不要蒜\",\"不要香菜\"]").build());
+            }
+            menu.add(dishVO);
+        }
+        return menu;
+    }
+}
@@ -0,0 +1,62 @@
+package com.sky.cache;
+
+import com.sky.exception.LoginFailedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenGenerationRegistryTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @InjectMocks
+    private TokenGenerationRegistry tokenGenerationRegistry;
+
+    @Test
+    void loginFailsWhenGenerationCannotBeRead() {
+        redisDown();
+
+        assertThrows(LoginFailedException.class,
+                () -> tokenGenerationRegistry.currentForLogin(TokenGenerationRegistry.EMPLOYEE, 1L));
+    }
+
+    @Test
+    void tokenCheckStaysOpenWhenRedisIsDown() {
+        redisDown();
+
+        assertEquals(0L, tokenGenerationRegistry.current(TokenGenerationRegistry.EMPLOYEE, 1L));
+    }
+
+    @Test
+    void loginUsesTheCachedGeneration() {
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("token:generation:emp:1")).thenReturn("3");
+        assertEquals(3L, tokenGenerationRegistry.current(TokenGenerationRegistry.EMPLOYEE, 1L));
+
+        // 已经缓存了代数, 签发令牌时不再访问redis (redis不可用也能正常登录)
+        assertEquals(3L, tokenGenerationRegistry.currentForLogin(TokenGenerationRegistry.EMPLOYEE, 1L));
+        verify(valueOperations, times(1)).get(anyString());
+    }
+
+    private void redisDown() {
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+    }
+}
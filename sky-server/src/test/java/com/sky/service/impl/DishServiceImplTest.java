@@ -0,0 +1,112 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * listWithFlavor: 一个分类的菜品及口味只需要2次查询 (菜品 + 口味), 而不是 N+1 次
+ */
+@ExtendWith(MockitoExtension.class)
+class DishServiceImplTest {
+
+    // 合成菜单: 菜品数, 每个菜品的口味数, 模拟的每次查询耗时(数据库往返)
+    private static final int DISH_COUNT = 200;
+    private static final int FLAVORS_PER_DISH = 3;
+    private static final long QUERY_MILLIS = 1;
+
+    @Mock
+    private DishMapper dishMapper;
+
+    @Mock
+    private DishFlavorMapper dishFlavorMapper;
+
+    @InjectMocks
+    private DishServiceImpl dishService;
+
+    @Test
+    void listWithFlavorLoadsAllFlavorsInOneQuery() {
+        AtomicInteger queries = new AtomicInteger();
+        List<Dish> dishes = new ArrayList<>();
+        List<DishFlavor> flavors = new ArrayList<>();
+        for (long id = 1; id <= DISH_COUNT; id++) {
+            dishes.add(Dish.builder().id(id).name("菜品" + id).categoryId(1L).build());
+            for (int i = 0; i < FLAVORS_PER_DISH; i++) {
+                flavors.add(DishFlavor.builder().dishId(id).name("口味" + i).value("[]").build());
+            }
+        }
+        when(dishMapper.list(any())).thenAnswer(invocation -> query(queries, dishes));
+        when(dishFlavorMapper.getByDishIDs(anyList())).thenAnswer(invocation -> query(queries, flavors));
+        when(dishFlavorMapper.getByDishID(anyLong())).thenAnswer(invocation -> query(queries,
+                flavors.stream().filter(f -> f.getDishId().equals(invocation.getArgument(0))).collect(Collectors.toList())));
+
+        // 预热 (BeanUtils 内省缓存等), 避免首次调用的开销计入耗时
+        dishService.listWithFlavor(new Dish());
+        queries.set(0);
+
+        // 改造前: 每个菜品单独查询一次口味
+        long start = System.nanoTime();
+        for (Dish dish : dishMapper.list(new Dish())) {
+            dishFlavorMapper.getByDishID(dish.getId());
+        }
+        long beforeMillis = (System.nanoTime() - start) / 1_000_000;
+        int beforeQueries = queries.getAndSet(0);
+
+        // 改造后
+        start = System.nanoTime();
+        List<DishVO> result = dishService.listWithFlavor(new Dish());
+        long afterMillis = (System.nanoTime() - start) / 1_000_000;
+        int afterQueries = queries.get();
+
+        System.out.printf("listWithFlavor (%d 个菜品, 每次查询 %dms): 改造前 %d 次查询 %dms, 改造后 %d 次查询 %dms%n",
+                DISH_COUNT, QUERY_MILLIS, beforeQueries, beforeMillis, afterQueries, afterMillis);
+
+        assertEquals(DISH_COUNT + 1, beforeQueries);
+        assertEquals(2, afterQueries);
+        assertTrue(afterMillis < beforeMillis);
+        verify(dishFlavorMapper, times(2)).getByDishIDs(anyList());
+        verify(dishFlavorMapper, times(DISH_COUNT)).getByDishID(anyLong()); // 只有上面"改造前"的调用, listWithFlavor 从不逐个查询
+
+        assertEquals(DISH_COUNT, result.size());
+        for (DishVO dishVO : result) {
+            assertEquals(FLAVORS_PER_DISH, dishVO.getFlavors().size());
+            assertTrue(dishVO.getFlavors().stream().allMatch(f -> f.getDishId().equals(dishVO.getId())));
+        }
+    }
+
+    @Test
+    void listWithFlavorSkipsFlavorQueryForEmptyCategory() {
+        when(dishMapper.list(any())).thenReturn(new ArrayList<>());
+
+        assertTrue(dishService.listWithFlavor(new Dish()).isEmpty());
+        verify(dishFlavorMapper, never()).getByDishIDs(anyList());
+    }
+
+    private static <T> T query(AtomicInteger queries, T result) throws InterruptedException {
+        queries.incrementAndGet();
+        Thread.sleep(QUERY_MILLIS);
+        return result;
+    }
+}
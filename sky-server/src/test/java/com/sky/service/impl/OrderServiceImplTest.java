@@ -0,0 +1,97 @@
+package com.sky.service.impl;
+
+import com.sky.cache.SalesLeaderboard;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.WorkspaceService;
+import com.sky.task.OrderTimeoutQueue;
+import com.sky.websocket.WebSocketServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    private static final String NUMBER = "1000001";
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @Mock
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @Mock
+    private SalesLeaderboard salesLeaderboard;
+
+    @Mock
+    private WorkspaceService workspaceService;
+
+    @Mock
+    private WebSocketServer webSocketServer;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @Test
+    void concurrentPayCallbacksApplySideEffectsOnce() {
+        // 两个并发的支付回调都读到了未支付的订单, 但只有一个的条件更新会成功
+        when(orderMapper.getByNumber(NUMBER)).thenReturn(unpaidOrder());
+        when(orderMapper.updatePaid(any())).thenReturn(1, 0);
+
+        orderService.paySuccess(NUMBER);
+        orderService.paySuccess(NUMBER);
+
+        ArgumentCaptor<Orders> captor = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper, times(2)).updatePaid(captor.capture());
+        assertEquals(Orders.TO_BE_CONFIRMED, captor.getValue().getStatus());
+        assertEquals(Orders.PAID, captor.getValue().getPayStatus());
+
+        verify(orderTimeoutQueue, times(1)).remove(1L);
+        verify(workspaceService, times(1)).orderPaid(any());
+        verify(salesLeaderboard, times(1)).add(any(), any());
+        verify(webSocketServer, times(1)).sendToAllClient(anyString());
+    }
+
+    @Test
+    void callbackForAlreadyPaidOrderChangesNothing() {
+        Orders paid = unpaidOrder();
+        paid.setStatus(Orders.TO_BE_CONFIRMED);
+        paid.setPayStatus(Orders.PAID);
+        when(orderMapper.getByNumber(NUMBER)).thenReturn(paid);
+        when(orderMapper.updatePaid(any())).thenReturn(0);
+
+        orderService.paySuccess(NUMBER);
+
+        verify(workspaceService, never()).orderPaid(any());
+        verify(salesLeaderboard, never()).add(any(), any());
+        verify(webSocketServer, never()).sendToAllClient(anyString());
+    }
+
+    private static Orders unpaidOrder() {
+        return Orders.builder()
+                .id(1L)
+                .number(NUMBER)
+                .status(Orders.PENDING_PAYMENT)
+                .payStatus(Orders.UN_PAID)
+                .orderTime(LocalDateTime.now())
+                .build();
+    }
+}
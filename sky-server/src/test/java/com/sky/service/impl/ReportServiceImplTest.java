@@ -0,0 +1,217 @@
+package com.sky.service.impl;
+
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 订单导出: 大数据量时边读边写, 内存占用与行数无关
+ * ————> surefire 以 -Xmx256m 运行测试 (见 sky-server/pom.xml), 非流式导出这个数据量会直接内存溢出
+ */
+@ExtendWith(MockitoExtension.class)
+class ReportServiceImplTest {
+
+    private static final int ORDER_COUNT = 100_000;
+    private static final int DETAILS_PER_ORDER = 2;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @InjectMocks
+    private ReportServiceImpl reportService;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void exportStreamsLargeResultWithBoundedHeap() throws Exception {
+        LocalDateTime orderTime = LocalDateTime.of(2024, 3, 1, 12, 0);
+        doAnswer(invocation -> {
+            ResultHandler<Orders> handler = invocation.getArgument(2);
+            for (long id = 1; id <= ORDER_COUNT; id++) {
+                handler.handleResult(new Context<>(Orders.builder().id(id).number(String.valueOf(1_000_000_000_000L + id))
+                        .status(Orders.COMPLETED).userId(id % 1000).orderTime(orderTime).checkoutTime(orderTime)
+                        .payMethod(1).payStatus(Orders.PAID).amount(new BigDecimal("58.50")).remark("少放辣")
+                        .phone("13800000000").address("北京市海淀区某某路1号").consignee("张三").build()));
+            }
+            return null;
+        }).when(orderMapper).streamByOrderTime(any(), any(), any());
+        doAnswer(invocation -> {
+            ResultHandler<OrderDetail> handler = invocation.getArgument(2);
+            for (long id = 1; id <= (long) ORDER_COUNT * DETAILS_PER_ORDER; id++) {
+                handler.handleResult(new Context<>(OrderDetail.builder().id(id).orderId(id / DETAILS_PER_ORDER)
+                        .name("宫保鸡丁").dishId(id % 50).dishFlavor("微辣").number(1).amount(new BigDecimal("29.25"))
+                        .build()));
+            }
+            return null;
+        }).when(orderDetailMapper).streamByOrderTime(any(), any(), any());
+
+        Path file = tempDir.resolve("orders.xlsx");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            when(response.getOutputStream()).thenReturn(new FileServletOutputStream(out));
+
+            resetPeakHeap();
+            long start = System.currentTimeMillis();
+            reportService.exportOrders(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31), response);
+            System.out.printf("导出 %d 个订单 + %d 条明细: %dms, 文件 %d KB, 堆内存峰值 %d MB (最大 %d MB)%n",
+                    ORDER_COUNT, ORDER_COUNT * DETAILS_PER_ORDER, System.currentTimeMillis() - start,
+                    Files.size(file) / 1024, peakHeap() >> 20, Runtime.getRuntime().maxMemory() >> 20);
+        }
+
+        // 每个sheet多一行表头
+        assertEquals(ORDER_COUNT + 1, countRows(file, "xl/worksheets/sheet1.xml"));
+        assertEquals(ORDER_COUNT * DETAILS_PER_ORDER + 1, countRows(file, "xl/worksheets/sheet2.xml"));
+    }
+
+    @Test
+    void invalidRangeIsRejectedBeforeWritingTheResponse() {
+        assertThrows(ReportBusinessException.class,
+                () -> reportService.exportOrders(LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 1), response));
+        verifyNoInteractions(response, orderMapper, orderDetailMapper);
+    }
+
+    /**
+     * 流式读取xlsx中某个sheet的xml, 统计行数 (不把整个文件加载到内存)
+     */
+    private static long countRows(Path file, String entryName) throws IOException {
+        byte[] marker = "<row ".getBytes(StandardCharsets.US_ASCII);
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(file))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().equals(entryName)) {
+                    return count(zip, marker);
+                }
+            }
+        }
+        throw new AssertionError("没有找到 " + entryName);
+    }
+
+    private static long count(InputStream in, byte[] marker) throws IOException {
+        long count = 0;
+        int matched = 0;
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == marker[matched]) {
+                    if (++matched == marker.length) {
+                        count++;
+                        matched = 0;
+                    }
+                } else {
+                    matched = buffer[i] == marker[0] ? 1 : 0;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static class Context<T> implements ResultContext<T> {
+
+        private final T result;
+
+        Context(T result) {
+            this.result = result;
+        }
+
+        public T getResultObject() {
+            return result;
+        }
+
+        public int getResultCount() {
+            return 1;
+        }
+
+        public boolean isStopped() {
+            return false;
+        }
+
+        public void stop() {
+        }
+    }
+
+    private static class FileServletOutputStream extends ServletOutputStream {
+
+        private final OutputStream out;
+
+        FileServletOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        public boolean isReady() {
+            return true;
+        }
+
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
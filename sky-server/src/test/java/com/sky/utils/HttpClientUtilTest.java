@@ -0,0 +1,138 @@
+package com.sky.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HttpClientUtil 复用连接池中的连接: 大量请求只建立少量的TCP连接
+ * (本地 HttpServer 按客户端端口统计实际建立的连接数)
+ */
+class HttpClientUtilTest {
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 250;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String url;
+
+    // 服务端看到的客户端连接 (客户端端口) 以及请求数
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeAll
+    static void disableNagle() {
+        // 本地 HttpServer 分开写响应头和响应体, 不关闭 Nagle 时长连接上每个请求都要等待 ~40ms 的延迟确认
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            connections.add(exchange.getRemoteAddress().getPort());
+            requests.incrementAndGet();
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] request = in.readAllBytes();
+                body = (exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawQuery() + " "
+                        + new String(request, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(THREADS * 2);
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/echo";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsReusePooledConnections() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        String result = HttpClientUtil.doGet(url, Collections.singletonMap("n", thread + "-" + i));
+                        assertEquals("GET n=" + thread + "-" + i + " ", result);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        int pooledConnections = connections.size();
+
+        // 对比: 每次请求都新建并关闭一个 HttpClient (改造前的方式)
+        connections.clear();
+        int unpooledRequests = 200;
+        for (int i = 0; i < unpooledRequests; i++) {
+            try (CloseableHttpClient client = HttpClients.createDefault();
+                 CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+                EntityUtils.consume(response.getEntity());
+            }
+        }
+
+        int total = THREADS * REQUESTS_PER_THREAD;
+        System.out.printf("连接池: %d 个请求, %d 个连接;  每次新建客户端: %d 个请求, %d 个连接%n",
+                total, pooledConnections, unpooledRequests, connections.size());
+
+        assertEquals(total + unpooledRequests, requests.get());
+        assertTrue(pooledConnections <= THREADS, "建立的连接数: " + pooledConnections);
+        assertEquals(unpooledRequests, connections.size());
+        // 所有连接都已归还连接池
+        assertEquals(0, HttpClientUtil.getStats(url).getLeased());
+    }
+
+    @Test
+    void postRequestsShareThePool() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            assertEquals("POST null a=" + i, HttpClientUtil.doPost(url, Collections.singletonMap("a", String.valueOf(i))));
+            assertEquals("POST null {\"a\":\"" + i + "\"}",
+                    HttpClientUtil.doPost4Json(url, Collections.singletonMap("a", String.valueOf(i))));
+        }
+
+        assertEquals(1, connections.size());
+        assertEquals(0, HttpClientUtil.getStats(url).getLeased());
+    }
+}
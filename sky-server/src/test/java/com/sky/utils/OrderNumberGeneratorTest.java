@@ -0,0 +1,141 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderNumberGeneratorTest {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int WORKER_ID_BITS = 10;
+
+    @Test
+    void idsAreUniqueAndIncreasingAcrossThreads() throws Exception {
+        OrderNumberGenerator generator = new OrderNumberGenerator(7);
+        int threads = 8;
+        int perThread = 100_000;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<long[]> task = () -> {
+                    start.await();
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                };
+                futures.add(executor.submit(task));
+            }
+
+            Set<Long> all = new HashSet<>(threads * perThread * 2);
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    // 同一个线程拿到的订单号严格递增
+                    assertTrue(i == 0 || ids[i] > ids[i - 1]);
+                    assertEquals(7, workerId(ids[i]));
+                    all.add(ids[i]);
+                }
+            }
+            assertEquals(threads * perThread, all.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void exhaustedSequenceBorrowsTheNextMillisecond() {
+        // 时钟停在同一毫秒: 序列号用完后借用下一毫秒, 订单号仍然唯一且递增
+        long now = System.currentTimeMillis();
+        OrderNumberGenerator generator = new OrderNumberGenerator(1, () -> now);
+
+        long first = generator.nextId();
+        long previous = first;
+        for (int i = 1; i < 3 * 4096; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertEquals(2, timestamp(previous) - timestamp(first));
+    }
+
+    @Test
+    void smallClockRollbackKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        OrderNumberGenerator generator = new OrderNumberGenerator(1, clock::get);
+
+        long before = generator.nextId();
+        clock.addAndGet(-2000);
+        long after = generator.nextId();
+
+        assertTrue(after > before);
+        assertEquals(timestamp(before), timestamp(after));
+    }
+
+    @Test
+    void largeClockRollbackIsRejected() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        OrderNumberGenerator generator = new OrderNumberGenerator(1, clock::get);
+
+        generator.nextId();
+        clock.addAndGet(-6000);
+
+        assertThrows(IllegalStateException.class, generator::nextId);
+        // 时钟恢复后可以继续生成
+        clock.addAndGet(6001);
+        generator.nextId();
+    }
+
+    @Test
+    void differentWorkersNeverCollide() {
+        long now = System.currentTimeMillis();
+        OrderNumberGenerator a = new OrderNumberGenerator(1, () -> now);
+        OrderNumberGenerator b = new OrderNumberGenerator(2, () -> now);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(a.nextId());
+            ids.add(b.nextId());
+        }
+        assertEquals(20_000, ids.size());
+    }
+
+    @Test
+    void suspendedGeneratorFailsFastUntilResumed() {
+        OrderNumberGenerator generator = new OrderNumberGenerator(3);
+        long before = generator.nextId();
+
+        generator.suspend();
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        generator.resume(9);
+        long after = generator.nextId();
+        assertEquals(9, workerId(after));
+        assertTrue(after > before);
+        assertThrows(IllegalArgumentException.class, () -> generator.resume(OrderNumberGenerator.MAX_WORKER_ID + 1));
+    }
+
+    private static long workerId(long id) {
+        return (id >>> SEQUENCE_BITS) & OrderNumberGenerator.MAX_WORKER_ID;
+    }
+
+    private static long timestamp(long id) {
+        return id >>> (WORKER_ID_BITS + SEQUENCE_BITS);
+    }
+}